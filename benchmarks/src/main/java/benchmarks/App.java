@@ -0,0 +1,106 @@
+package benchmarks;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Handles on the simulation classes.
+ * <p>
+ * The simulation lives in the default package, which cannot be imported, and JMH refuses
+ * benchmarks in the default package. The handles are resolved once and held in static final
+ * fields, so the JIT inlines them like direct calls.
+ */
+final class App {
+    static final MethodHandle MERGE_COLORS = method("ExplosionRenderer", "mergeColors", int.class, int.class, int.class);
+    static final MethodHandle AVG2 = method("ExplosionRenderer", "avg2", int.class, int.class, int.class);
+    static final MethodHandle SET_ALPHA_PERCENT = method("ExplosionRenderer", "setAlphaPercent", int.class, int.class, double.class);
+    static final MethodHandle GAUSS = method("ExplosionRenderer", "gauss", int.class, int.class, int.class, int[].class, int.class, int.class);
+
+    static final MethodHandle KERNEL_MERGE_COLORS = method("PixelKernels", "mergeColors", int.class, int.class, int.class);
+    static final MethodHandle KERNEL_AVG2 = method("PixelKernels", "avg2", int.class, int.class, int.class);
+    static final MethodHandle KERNEL_ALPHA_LUT = method("PixelKernels", "alphaLut", int[].class, double.class);
+    static final MethodHandle KERNEL_SET_ALPHA = method("PixelKernels", "setAlpha", int.class, int.class, int[].class);
+    static final MethodHandle KERNEL_GAUSS = method("PixelKernels", "gauss", int.class, int.class, int.class, int[].class, int.class, int.class);
+
+    static final MethodHandle NEW_SCALAR_ROWS = constructor("ScalarRowKernels");
+    static final MethodHandle NEW_VECTOR_ROWS = optionalConstructor("VectorRowKernels");
+    static final MethodHandle ROWS_MERGE_COLORS = method("RowKernels", "mergeColors", void.class, int[].class, int.class, int[].class, int.class, int[].class, int.class, int.class);
+    static final MethodHandle ROWS_AVG2 = method("RowKernels", "avg2", void.class, int[].class, int.class, int[].class, int.class, int[].class, int.class, int.class);
+    static final MethodHandle ROWS_SET_ALPHA = method("RowKernels", "setAlpha", void.class, int[].class, int.class, int[].class, int[].class, int.class, int.class);
+    static final MethodHandle ROWS_GAUSS = method("RowKernels", "gauss", void.class, int[].class, int.class, int.class, int.class, int[].class, int.class);
+
+    static final MethodHandle NEW_RENDERER = constructor("ExplosionRenderer", Random.class, boolean.class);
+    static final MethodHandle NEW_TILE_RASTERIZER = constructor("TileRasterizer", ForkJoinPool.class, int.class);
+    static final MethodHandle SET_TILE_RASTERIZER = method("ExplosionRenderer", "setTileRasterizer", void.class, type("TileRasterizer"));
+    static final MethodHandle BEGIN_FRAME = method("ExplosionRenderer", "beginFrame", void.class, int.class, int.class, BufferedImage.class, double.class, double.class);
+    static final MethodHandle DRAW_BLASTS = method("ExplosionRenderer", "drawBlasts", void.class, int[].class, int[].class, int[].class, int.class, Image.class);
+
+    private App() {
+    }
+
+    static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Static methods keep their signature, instance methods take the receiver as an {@code Object}.
+     */
+    private static MethodHandle method(String owner, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            Method m = type(owner).getDeclaredMethod(name, parameterTypes);
+            m.setAccessible(true);
+            MethodHandle handle = MethodHandles.lookup().unreflect(m);
+            return handle.asType(erase(handle.type()));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle constructor(String owner, Class<?>... parameterTypes) {
+        try {
+            Constructor<?> c = type(owner).getDeclaredConstructor(parameterTypes);
+            c.setAccessible(true);
+            MethodHandle handle = MethodHandles.lookup().unreflectConstructor(c);
+            return handle.asType(erase(handle.type()));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Like {@link #constructor}, but null when the class cannot be loaded in this JVM.
+     */
+    private static MethodHandle optionalConstructor(String owner, Class<?>... parameterTypes) {
+        try {
+            return constructor(owner, parameterTypes);
+        } catch (IllegalStateException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the simulation's own types, which cannot be named here, with {@code Object}.
+     */
+    private static MethodType erase(MethodType type) {
+        for (int n = 0; n < type.parameterCount(); n++) {
+            if (type.parameterType(n).getClassLoader() != null) {
+                type = type.changeParameterType(n, Object.class);
+            }
+        }
+        if (type.returnType().getClassLoader() != null) {
+            type = type.changeReturnType(Object.class);
+        }
+        return type;
+    }
+}
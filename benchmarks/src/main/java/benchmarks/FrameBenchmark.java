@@ -0,0 +1,82 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full frame of the effect layer over the bundled background, with blasts spread over
+ * the board at every stage of their growth.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrameBenchmark {
+    private static final int MAX_ITER = 200;
+    private static final double BLAST_INCREMENT = 0.6;
+    private static final double MAX_R = MAX_ITER * BLAST_INCREMENT;
+
+    @Param({"1", "10", "100", "1000"})
+    public int blasts;
+
+    /** Tile rasterizer threads, 0 renders the blasts one after another. */
+    @Param({"0"})
+    public int threads;
+
+    private BufferedImage background;
+    private Image boomImage;
+    private Object renderer;
+    private int[] xs;
+    private int[] ys;
+    private int[] rs;
+
+    @Setup
+    public void setup() throws Throwable {
+        background = argb(ImageIO.read(App.type("SwingExplosion").getResource("background.png")));
+        BufferedImage boom = new BufferedImage(80, 80, BufferedImage.TYPE_INT_ARGB);
+        Graphics g = boom.getGraphics();
+        g.drawImage(ImageIO.read(App.type("SwingExplosion").getResource("cotton.png")), 0, 0, 80, 80, null);
+        g.dispose();
+        boomImage = boom;
+
+        renderer = (Object) App.NEW_RENDERER.invokeExact(new Random(48), true);
+        if (threads > 0) {
+            Object tiles = (Object) App.NEW_TILE_RASTERIZER.invokeExact(new ForkJoinPool(threads), 64);
+            App.SET_TILE_RASTERIZER.invokeExact(renderer, tiles);
+        }
+
+        Random random = new Random(48);
+        xs = new int[blasts];
+        ys = new int[blasts];
+        rs = new int[blasts];
+        for (int n = 0; n < blasts; n++) {
+            xs[n] = random.nextInt(background.getWidth());
+            ys[n] = random.nextInt(background.getHeight());
+            rs[n] = 1 + (int) (random.nextInt(MAX_ITER) * BLAST_INCREMENT);
+        }
+    }
+
+    @Benchmark
+    public Object frame() throws Throwable {
+        App.BEGIN_FRAME.invokeExact(renderer, background.getWidth(), background.getHeight(), background, MAX_R, 1.0);
+        App.DRAW_BLASTS.invokeExact(renderer, xs, ys, rs, blasts, boomImage);
+        return renderer;
+    }
+
+    private static BufferedImage argb(BufferedImage source) throws IOException {
+        BufferedImage argb = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics g = argb.getGraphics();
+        g.drawImage(source, 0, 0, null);
+        g.dispose();
+        return argb;
+    }
+}
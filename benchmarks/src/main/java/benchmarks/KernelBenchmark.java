@@ -0,0 +1,123 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The color kernels the renderer runs per pixel, each on its own, over a row of random pixels.
+ * The {@code kernels*} variants are the allocation-free ones from {@code PixelKernels}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KernelBenchmark {
+    static final int WIDTH = 1024;
+    static final int HEIGHT = 3;
+
+    private final int[] pixels = new int[WIDTH * HEIGHT];
+    private final int[] others = new int[WIDTH];
+    private final double[] percents = new double[WIDTH];
+    private int[] alphaLut;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(48);
+        for (int n = 0; n < pixels.length; n++) {
+            pixels[n] = random.nextInt();
+        }
+        for (int n = 0; n < WIDTH; n++) {
+            others[n] = random.nextInt();
+            percents[n] = random.nextDouble();
+        }
+        try {
+            alphaLut = (int[]) App.KERNEL_ALPHA_LUT.invokeExact(0.37);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDTH)
+    public int mergeColors() throws Throwable {
+        int acc = 0;
+        for (int n = 0; n < WIDTH; n++) {
+            acc ^= (int) App.MERGE_COLORS.invokeExact(pixels[n], others[n]);
+        }
+        return acc;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDTH)
+    public int avg2() throws Throwable {
+        int acc = 0;
+        for (int n = 0; n < WIDTH; n++) {
+            acc ^= (int) App.AVG2.invokeExact(pixels[n], others[n]);
+        }
+        return acc;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDTH)
+    public int setAlphaPercent() throws Throwable {
+        int acc = 0;
+        for (int n = 0; n < WIDTH; n++) {
+            acc ^= (int) App.SET_ALPHA_PERCENT.invokeExact(pixels[n], percents[n]);
+        }
+        return acc;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDTH)
+    public int gauss() throws Throwable {
+        int acc = 0;
+        for (int n = 0; n < WIDTH; n++) {
+            acc ^= (int) App.GAUSS.invokeExact(n, 1, pixels, WIDTH, HEIGHT);
+        }
+        return acc;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDTH)
+    public int kernelsMergeColors() throws Throwable {
+        int acc = 0;
+        for (int n = 0; n < WIDTH; n++) {
+            acc ^= (int) App.KERNEL_MERGE_COLORS.invokeExact(pixels[n], others[n]);
+        }
+        return acc;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDTH)
+    public int kernelsAvg2() throws Throwable {
+        int acc = 0;
+        for (int n = 0; n < WIDTH; n++) {
+            acc ^= (int) App.KERNEL_AVG2.invokeExact(pixels[n], others[n]);
+        }
+        return acc;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDTH)
+    public int kernelsSetAlpha() throws Throwable {
+        int acc = 0;
+        for (int n = 0; n < WIDTH; n++) {
+            acc ^= (int) App.KERNEL_SET_ALPHA.invokeExact(pixels[n], alphaLut);
+        }
+        return acc;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDTH)
+    public int kernelsGauss() throws Throwable {
+        int acc = 0;
+        for (int n = 0; n < WIDTH; n++) {
+            acc ^= (int) App.KERNEL_GAUSS.invokeExact(n, 1, pixels, WIDTH, HEIGHT);
+        }
+        return acc;
+    }
+}
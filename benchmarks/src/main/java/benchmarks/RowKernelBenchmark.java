@@ -0,0 +1,70 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole-row kernels, scalar against {@code jdk.incubator.vector}, over one row of random pixels.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class RowKernelBenchmark {
+    static final int WIDTH = KernelBenchmark.WIDTH;
+    static final int HEIGHT = KernelBenchmark.HEIGHT;
+
+    @Param({"scalar", "vector"})
+    public String kernels;
+
+    private Object rows;
+    private final int[] pixels = new int[WIDTH * HEIGHT];
+    private final int[] others = new int[WIDTH];
+    private final int[] dst = new int[WIDTH];
+    private int[] alphaLut;
+
+    @Setup
+    public void setup() throws Throwable {
+        rows = "vector".equals(kernels) ? (Object) App.NEW_VECTOR_ROWS.invokeExact() : (Object) App.NEW_SCALAR_ROWS.invokeExact();
+        alphaLut = (int[]) App.KERNEL_ALPHA_LUT.invokeExact(0.37);
+        Random random = new Random(48);
+        for (int n = 0; n < pixels.length; n++) {
+            pixels[n] = random.nextInt();
+        }
+        for (int n = 0; n < WIDTH; n++) {
+            others[n] = random.nextInt();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDTH)
+    public int[] mergeColors() throws Throwable {
+        App.ROWS_MERGE_COLORS.invokeExact(rows, pixels, 0, others, 0, dst, 0, WIDTH);
+        return dst;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDTH)
+    public int[] avg2() throws Throwable {
+        App.ROWS_AVG2.invokeExact(rows, pixels, 0, others, 0, dst, 0, WIDTH);
+        return dst;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDTH)
+    public int[] setAlpha() throws Throwable {
+        App.ROWS_SET_ALPHA.invokeExact(rows, pixels, 0, alphaLut, dst, 0, WIDTH);
+        return dst;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDTH)
+    public int[] gauss() throws Throwable {
+        App.ROWS_GAUSS.invokeExact(rows, pixels, WIDTH, HEIGHT, 1, dst, 0);
+        return dst;
+    }
+}
@@ -0,0 +1,116 @@
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Decodes background images once, off the event dispatch thread, into TYPE_INT_ARGB images
+ * that the renderer can index directly.
+ * <p>
+ * Decoded images are cached by path and modification time, so picking the same file again
+ * is free and an edited file is decoded again. Hits, misses and decode times are published
+ * through {@link RenderStats}.
+ */
+public class BackgroundCache {
+    private static final int MAX_ENTRIES = 4;
+
+    private final ExecutorService decoder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "background-decoder");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Map<String, BufferedImage> cache = new LinkedHashMap<String, BufferedImage>(MAX_ENTRIES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong decodeNanos = new AtomicLong();
+    private volatile long lastDecodeNanos;
+
+    /**
+     * Loads {@code file} on the decoder thread. {@code onReady} runs on that thread with the
+     * decoded image, {@code onError} if it could not be decoded.
+     */
+    public void load(File file, Consumer<BufferedImage> onReady, Consumer<IOException> onError) {
+        decoder.execute(() -> {
+            try {
+                onReady.accept(get(file));
+            } catch (IOException io) {
+                onError.accept(io);
+            }
+        });
+    }
+
+    /**
+     * Returns the decoded image for {@code file}, decoding it on the calling thread on a miss.
+     */
+    public BufferedImage get(File file) throws IOException {
+        String key = file.getAbsolutePath() + '@' + file.lastModified();
+        synchronized (cache) {
+            BufferedImage cached = cache.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+
+        long start = System.nanoTime();
+        BufferedImage decoded = ImageIO.read(file);
+        if (decoded == null) {
+            throw new IOException("Unsupported image format: " + file);
+        }
+        BufferedImage image = toIntArgb(decoded);
+        lastDecodeNanos = System.nanoTime() - start;
+        decodeNanos.addAndGet(lastDecodeNanos);
+
+        synchronized (cache) {
+            cache.put(key, image);
+        }
+        return image;
+    }
+
+    static BufferedImage toIntArgb(BufferedImage source) {
+        if (source.getType() == BufferedImage.TYPE_INT_ARGB) {
+            return source;
+        }
+        BufferedImage argb = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics g = argb.getGraphics();
+        g.drawImage(source, 0, 0, null);
+        g.dispose();
+        return argb;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getLastDecodeNanos() {
+        return lastDecodeNanos;
+    }
+
+    public long getTotalDecodeNanos() {
+        return decodeNanos.get();
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + hits + " misses=" + misses + " lastDecode=" + lastDecodeNanos / 1_000_000 + "ms";
+    }
+}
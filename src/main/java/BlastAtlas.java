@@ -0,0 +1,256 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Every radius a blast goes through, prerendered for one {@code max_R} and fog height into a few
+ * flat arrays, and kept on disk so the next run with the same settings starts with it.
+ * <p>
+ * Where {@link RadialTables} keep the cloud density as a double, the atlas keeps the cloud alpha
+ * it comes to at the fog height, a byte, and both shockwave displacements of an offset in one int,
+ * so a blast pixel reads one alpha byte and one displacement. The values are cut from
+ * the radial tables with the renderer's own expressions, so the pixels stay the same.
+ * <p>
+ * Quadrants are laid out radius after radius: the one of radius {@code r} starts at {@link #base}
+ * and is indexed by {@code |di| * (r + 1) + |dj|}. Radii past the fade out draw nothing and are
+ * left out. The coarse levels of detail still go through the radial tables.
+ */
+public class BlastAtlas {
+    // -Dexplosion.atlasBytes=N refuses atlases larger than N bytes, the renderer stays on the radial tables then
+    static final long MAX_BYTES = Long.getLong("explosion.atlasBytes", 64L << 20);
+
+    private static final int MAGIC = 0x4C544142; // "BATL"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+
+    // The atlas opened last, renderers of the same settings share it
+    private static BlastAtlas shared;
+
+    private final double max_R;
+    private final double fogHeight;
+    /** Largest radius that still draws. */
+    private final int maxRadius;
+
+    /** Start of every radius' quadrant in the cell arrays, and its first column in the span arrays. */
+    private final int[] base;
+    private final int[] spanBase;
+    final byte[] cloud;
+    /** Displacement of the column in the high half, of the row in the low half. */
+    final int[] displacement;
+    final short[] span;
+    final short[] shockwaveSpan;
+    private final int[][] alphaLuts;
+    private final int[][] alphaCloudLuts;
+
+    private BlastAtlas(double max_R, double fogHeight) {
+        this.max_R = max_R;
+        this.fogHeight = fogHeight;
+        int r = 0;
+        while (!trimmed(r + 1, max_R)) {
+            r++;
+        }
+        maxRadius = r;
+        base = new int[maxRadius + 2];
+        spanBase = new int[maxRadius + 2];
+        for (r = 0; r <= maxRadius; r++) {
+            base[r + 1] = base[r] + (r + 1) * (r + 1);
+            spanBase[r + 1] = spanBase[r] + r + 1;
+        }
+        cloud = new byte[base[maxRadius + 1]];
+        displacement = new int[cloud.length];
+        span = new short[spanBase[maxRadius + 1]];
+        shockwaveSpan = new short[span.length];
+        alphaLuts = new int[maxRadius + 1][];
+        alphaCloudLuts = new int[maxRadius + 1][];
+        for (r = 0; r <= maxRadius; r++) {
+            // The same percentages as the radial tables, cheap enough to work out again on load
+            double radiusPercent = (r + 0.01 * max_R) / max_R;
+            alphaLuts[r] = PixelKernels.alphaLut(1 - Math.pow(2 * radiusPercent - 1, 2));
+            alphaCloudLuts[r] = PixelKernels.alphaLut(1 - Math.pow(2 * radiusPercent - 1, 4));
+        }
+    }
+
+    /**
+     * Bytes an atlas for {@code max_R} takes.
+     */
+    static long bytes(double max_R) {
+        long cells = 0;
+        long columns = 0;
+        for (int r = 0; !trimmed(r, max_R); r++) {
+            cells += (r + 1L) * (r + 1);
+            columns += r + 1;
+        }
+        return cells * (1 + 4) + columns * 2 * 2;
+    }
+
+    /**
+     * The atlas of these settings: read from {@code directory} when a previous run left it there,
+     * otherwise built and written there for the next one. Null when it would be larger than
+     * {@link #MAX_BYTES}.
+     */
+    public static synchronized BlastAtlas open(File directory, double max_R, double fogHeight) {
+        if (shared != null && shared.matches(max_R, fogHeight)) {
+            return shared;
+        }
+        if (bytes(max_R) > MAX_BYTES) {
+            System.err.printf("Blast atlas for max_R %.2f needs %d bytes, more than %d%n", max_R, bytes(max_R), MAX_BYTES);
+            return null;
+        }
+        File file = new File(directory, String.format(Locale.ROOT, "blast-atlas-%.4f-%.4f.bin", max_R, fogHeight));
+        long start = System.nanoTime();
+        if (file.isFile()) {
+            try {
+                BlastAtlas atlas = read(file, max_R, fogHeight);
+                System.err.printf("Blast atlas read from %s in %.1f ms: %s%n", file, (System.nanoTime() - start) / 1e6, atlas);
+                return shared = atlas;
+            } catch (IOException e) {
+                System.err.println("Blast atlas " + file + " unusable, building it again: " + e.getMessage());
+            }
+        }
+        BlastAtlas atlas = build(max_R, fogHeight, new RadialTables(Long.MAX_VALUE));
+        System.err.printf("Blast atlas built in %.1f ms: %s%n", (System.nanoTime() - start) / 1e6, atlas);
+        try {
+            directory.mkdirs();
+            atlas.write(file);
+        } catch (IOException e) {
+            System.err.println("Blast atlas not saved to " + file + ": " + e.getMessage());
+        }
+        return shared = atlas;
+    }
+
+    /**
+     * Cuts the atlas out of {@code tables}, which it sets to {@code max_R}.
+     */
+    static BlastAtlas build(double max_R, double fogHeight, RadialTables tables) {
+        BlastAtlas atlas = new BlastAtlas(max_R, fogHeight);
+        int ah = (int) ((255 + 255 * fogHeight) / 2);
+        tables.setMaxR(max_R);
+        for (int r = 0; r <= atlas.maxRadius; r++) {
+            RadialTables.Table table = tables.get(r);
+            int stride = table.stride;
+            int cells = atlas.base[r];
+            for (int di = 0; di <= r; di++) {
+                atlas.span[atlas.spanBase[r] + di] = table.span[di];
+                atlas.shockwaveSpan[atlas.spanBase[r] + di] = table.shockwaveSpan[di];
+                for (int dj = 0; dj <= r; dj++) {
+                    int index = di * stride + dj;
+                    // What PixelKernels.cloud makes of the density for this fog height
+                    atlas.cloud[cells + index] = (byte) ((int) (ah * table.cloudAlpha[index]) & 0xFF);
+                    atlas.displacement[cells + index] = table.displacement[index] << 16 | table.displacement[dj * stride + di] & 0xFFFF;
+                }
+            }
+        }
+        return atlas;
+    }
+
+    private static BlastAtlas read(File file, double max_R, double fogHeight) throws IOException {
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(in, header);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("not a blast atlas");
+            }
+            if (Double.compare(header.getDouble(), max_R) != 0 || Double.compare(header.getDouble(), fogHeight) != 0) {
+                throw new IOException("made for other settings");
+            }
+            BlastAtlas atlas = new BlastAtlas(max_R, fogHeight);
+            if (header.getInt() != atlas.maxRadius || in.size() != HEADER_BYTES + bytes(max_R)) {
+                throw new IOException("wrong size");
+            }
+            ByteBuffer body = ByteBuffer.allocate((int) bytes(max_R)).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(in, body);
+            body.get(atlas.cloud);
+            body.asIntBuffer().get(atlas.displacement);
+            body.position(body.position() + atlas.displacement.length * 4);
+            body.asShortBuffer().get(atlas.span);
+            body.position(body.position() + atlas.span.length * 2);
+            body.asShortBuffer().get(atlas.shockwaveSpan);
+            return atlas;
+        }
+    }
+
+    private void write(File file) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + (int) bytes(max_R)).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putDouble(max_R).putDouble(fogHeight).putInt(maxRadius).putInt(0);
+        out.put(cloud);
+        out.asIntBuffer().put(displacement);
+        out.position(out.position() + displacement.length * 4);
+        out.asShortBuffer().put(span);
+        out.position(out.position() + span.length * 2);
+        out.asShortBuffer().put(shockwaveSpan);
+        out.rewind();
+        // Written next to it and renamed, so a run that dies halfway leaves no broken atlas behind
+        File partial = new File(file.getPath() + ".part");
+        try (FileChannel channel = FileChannel.open(partial.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+        if (!partial.renameTo(file)) {
+            file.delete();
+            if (!partial.renameTo(file)) {
+                throw new IOException("Cannot replace " + file);
+            }
+        }
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                throw new IOException("truncated");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static boolean trimmed(int r, double max_R) {
+        return (r + 0.01 * max_R) / max_R > 1;
+    }
+
+    public boolean matches(double max_R, double fogHeight) {
+        return Double.compare(max_R, this.max_R) == 0 && Double.compare(fogHeight, this.fogHeight) == 0;
+    }
+
+    /**
+     * Whether radius {@code r} draws nothing.
+     */
+    public boolean isTrimmed(int r) {
+        return r > maxRadius;
+    }
+
+    /**
+     * Start of the quadrant of radius {@code r} in {@link #cloud} and {@link #displacement}.
+     */
+    int base(int r) {
+        return base[r];
+    }
+
+    /**
+     * Start of the columns of radius {@code r} in {@link #span} and {@link #shockwaveSpan}.
+     */
+    int spanBase(int r) {
+        return spanBase[r];
+    }
+
+    int[] alphaLut(int r) {
+        return alphaLuts[r];
+    }
+
+    int[] alphaCloudLut(int r) {
+        return alphaCloudLuts[r];
+    }
+
+    public long getBytes() {
+        return bytes(max_R) + (maxRadius + 1) * 2L * 256 * 4;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "radii 0-%d, %d cells, %d bytes", maxRadius, cloud.length, getBytes());
+    }
+}
@@ -0,0 +1,178 @@
+import java.util.Arrays;
+
+/**
+ * Uniform grid over the board listing, for every cell, the blasts whose bounding square overlaps it.
+ * <p>
+ * Blasts are identified by their slot in the arrays handed to {@link #update}, and every cell keeps
+ * its slots in ascending order, so walking a cell visits its blasts in drawing order. The index is
+ * kept from one update to the next: a blast only moves between cells when the cells its square
+ * covers change, which for a growing blast happens once every few ticks. Slots that a burnt-out
+ * blast left to another one are treated the same way, by the cells they cover.
+ */
+public class BlastIndex {
+    private final int cellSize;
+
+    private int width;
+    private int height;
+    private int cellsX;
+    private int cellsY;
+    private int[][] cellBlasts = new int[0][];
+    private int[] cellCounts = new int[0];
+
+    // First and last cell column and row every slot is listed under, empty when the first is past the last
+    private int[] slotCells = new int[0];
+    private int slots;
+
+    private long moves;
+
+    public BlastIndex(int cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Brings the index to the first {@code count} blasts, for a board of {@code width} x {@code height}.
+     */
+    public void update(int width, int height, int[] xs, int[] ys, int[] rs, int count) {
+        if (width != this.width || height != this.height) {
+            resize(width, height);
+        }
+        if (slotCells.length < count * 4) {
+            int previous = slotCells.length;
+            slotCells = Arrays.copyOf(slotCells, Math.max(count * 4, slotCells.length * 2));
+            for (int n = previous; n < slotCells.length; n += 4) {
+                setEmpty(n / 4);
+            }
+        }
+
+        for (int k = 0; k < count; k++) {
+            int r = rs[k];
+            int cx0 = 0;
+            int cy0 = 0;
+            int cx1 = -1;
+            int cy1 = -1;
+            if (r > 0 && xs[k] + r >= 0 && ys[k] + r >= 0) {
+                cx0 = Math.max(0, (xs[k] - r) / cellSize);
+                cx1 = Math.min(cellsX - 1, (xs[k] + r) / cellSize);
+                cy0 = Math.max(0, (ys[k] - r) / cellSize);
+                cy1 = Math.min(cellsY - 1, (ys[k] + r) / cellSize);
+            }
+            move(k, cx0, cy0, cx1, cy1);
+        }
+        for (int k = count; k < slots; k++) {
+            move(k, 0, 0, -1, -1);
+        }
+        slots = count;
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    public int getCellsX() {
+        return cellsX;
+    }
+
+    public int getCellsY() {
+        return cellsY;
+    }
+
+    /**
+     * Number of blasts overlapping cell {@code cell}, numbered row by row.
+     */
+    public int count(int cell) {
+        return cellCounts[cell];
+    }
+
+    /**
+     * Slots of the blasts overlapping cell {@code cell} in ascending order. Entries past {@link #count} are garbage.
+     */
+    public int[] blasts(int cell) {
+        return cellBlasts[cell];
+    }
+
+    /**
+     * Times a blast was added to or removed from a cell since the index was made.
+     */
+    public long getMoves() {
+        return moves;
+    }
+
+    private void resize(int width, int height) {
+        this.width = width;
+        this.height = height;
+        cellsX = (width + cellSize - 1) / cellSize;
+        cellsY = (height + cellSize - 1) / cellSize;
+        cellBlasts = new int[cellsX * cellsY][8];
+        cellCounts = new int[cellsX * cellsY];
+        for (int k = 0; k < slotCells.length / 4; k++) {
+            setEmpty(k);
+        }
+        slots = 0;
+    }
+
+    private void setEmpty(int k) {
+        slotCells[k * 4] = 0;
+        slotCells[k * 4 + 1] = 0;
+        slotCells[k * 4 + 2] = -1;
+        slotCells[k * 4 + 3] = -1;
+    }
+
+    /**
+     * Lists slot {@code k} under the cells of [cx0, cx1] x [cy0, cy1] only, touching just the cells
+     * it enters or leaves.
+     */
+    private void move(int k, int cx0, int cy0, int cx1, int cy1) {
+        int n = k * 4;
+        int ox0 = slotCells[n];
+        int oy0 = slotCells[n + 1];
+        int ox1 = slotCells[n + 2];
+        int oy1 = slotCells[n + 3];
+        if (ox0 == cx0 && oy0 == cy0 && ox1 == cx1 && oy1 == cy1) {
+            return;
+        }
+        for (int cy = oy0; cy <= oy1; cy++) {
+            for (int cx = ox0; cx <= ox1; cx++) {
+                if (cx < cx0 || cx > cx1 || cy < cy0 || cy > cy1) {
+                    remove(cy * cellsX + cx, k);
+                }
+            }
+        }
+        for (int cy = cy0; cy <= cy1; cy++) {
+            for (int cx = cx0; cx <= cx1; cx++) {
+                if (cx < ox0 || cx > ox1 || cy < oy0 || cy > oy1) {
+                    insert(cy * cellsX + cx, k);
+                }
+            }
+        }
+        slotCells[n] = cx0;
+        slotCells[n + 1] = cy0;
+        slotCells[n + 2] = cx1;
+        slotCells[n + 3] = cy1;
+    }
+
+    private void insert(int cell, int k) {
+        int[] blasts = cellBlasts[cell];
+        int count = cellCounts[cell];
+        if (count == blasts.length) {
+            blasts = cellBlasts[cell] = Arrays.copyOf(blasts, count * 2);
+        }
+        // New blasts take the highest slots, so this is usually an append
+        int at = count;
+        if (count > 0 && blasts[count - 1] > k) {
+            at = -Arrays.binarySearch(blasts, 0, count, k) - 1;
+            System.arraycopy(blasts, at, blasts, at + 1, count - at);
+        }
+        blasts[at] = k;
+        cellCounts[cell] = count + 1;
+        moves++;
+    }
+
+    private void remove(int cell, int k) {
+        int[] blasts = cellBlasts[cell];
+        int count = cellCounts[cell];
+        int at = Arrays.binarySearch(blasts, 0, count, k);
+        System.arraycopy(blasts, at + 1, blasts, at, count - at - 1);
+        cellCounts[cell] = count - 1;
+        moves++;
+    }
+}
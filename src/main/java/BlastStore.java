@@ -0,0 +1,322 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Active blasts as parallel primitive arrays.
+ * <p>
+ * One writer at a time (the simulation tick, or the event thread while the simulation is
+ * stopped) owns the working arrays, grows the blasts and compacts burnt-out ones away by
+ * swapping the last blast into their slot. After every change it publishes a {@link Snapshot}
+ * copy that any number of readers can render from without locking. Snapshots are recycled
+ * once no reader holds them, so a steady state allocates nothing.
+ * <p>
+ * Spawns may come from any thread. They go through a lock-free {@link SpawnRing} and only join
+ * the working arrays on the next {@link #tick} or {@link #drain}, all of them in one batch. A spawn
+ * closer than the merge distance to another spawn of the batch, or to a blast that has not grown
+ * past that distance yet, adds nothing. When the ring is full the spawning thread empties it into
+ * the working arrays itself, which holds it up until the current tick is done.
+ * <p>
+ * Every blast has a yield, which scales how far it grows per tick. The largest radius stays
+ * {@code max_R} for all of them, the renderer's tables are built for that one scale, so a strong
+ * blast reaches it in fewer ticks and a weak one lingers.
+ */
+public class BlastStore {
+    public static final int DEFAULT_SPAWN_CAPACITY = 4096;
+    public static final float MIN_YIELD = 0.05f;
+    public static final float MAX_YIELD = 20f;
+
+    /**
+     * Read-only copy of the blasts at one point in time. Entries past {@link #size} are garbage.
+     */
+    public static final class Snapshot {
+        public int[] x;
+        public int[] y;
+        public float[] r;
+        public int size;
+
+        private final AtomicInteger readers = new AtomicInteger();
+
+        private Snapshot(int capacity) {
+            x = new int[capacity];
+            y = new int[capacity];
+            r = new float[capacity];
+        }
+    }
+
+    private int[] x;
+    private int[] y;
+    private float[] r;
+    private float[] yields;
+    private int size;
+
+    private final SpawnRing pending;
+    private final MergeGrid grid = new MergeGrid();
+    private volatile double mergeDistance;
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+
+    private volatile Snapshot published;
+    private final Snapshot[] spares = new Snapshot[3];
+
+    public BlastStore(int initialCapacity, int spawnCapacity) {
+        x = new int[initialCapacity];
+        y = new int[initialCapacity];
+        r = new float[initialCapacity];
+        yields = new float[initialCapacity];
+        pending = new SpawnRing(spawnCapacity);
+        published = new Snapshot(0);
+    }
+
+    public BlastStore(int initialCapacity) {
+        this(initialCapacity, DEFAULT_SPAWN_CAPACITY);
+    }
+
+    /**
+     * Spawns closer than {@code mergeDistance} pixels are merged, 0 keeps every spawn.
+     */
+    public void setMergeDistance(double mergeDistance) {
+        this.mergeDistance = mergeDistance;
+    }
+
+    /**
+     * Queues a blast of radius {@code radius} at ({@code bx}, {@code by}). Safe from any thread.
+     */
+    public void spawn(int bx, int by, float radius) {
+        spawn(bx, by, radius, 1f);
+    }
+
+    /**
+     * Queues a blast growing {@code yield} times as fast as the others, clamped to
+     * {@link #MIN_YIELD}..{@link #MAX_YIELD}. Safe from any thread.
+     */
+    public void spawn(int bx, int by, float radius, float yield) {
+        yield = Math.max(MIN_YIELD, Math.min(MAX_YIELD, yield));
+        while (!pending.offer(bx, by, radius, yield)) {
+            overflows.incrementAndGet();
+            synchronized (this) {
+                takePending();
+            }
+        }
+    }
+
+    /**
+     * Adds the queued spawns, grows every blast by {@code blast_increment} times its yield and drops
+     * the ones past {@code max_R}, then publishes the result.
+     */
+    public synchronized void tick(double max_R, double blast_increment) {
+        takePending();
+        for (int n = 0; n < size; n++) {
+            if ((int) r[n] <= max_R) {
+                r[n] += blast_increment * yields[n];
+            } else {
+                size--;
+                x[n] = x[size];
+                y[n] = y[size];
+                r[n] = r[size];
+                yields[n] = yields[size];
+                n--;
+            }
+        }
+        publish();
+    }
+
+    /**
+     * Adds the queued spawns and publishes them without advancing the simulation. Returns how many
+     * blasts were added, not counting merged spawns.
+     */
+    public synchronized int drain() {
+        int added = takePending();
+        publish();
+        return added;
+    }
+
+    public synchronized void clear() {
+        pending.clear();
+        size = 0;
+        publish();
+    }
+
+    /**
+     * Pins the latest snapshot. It stays intact until handed back to {@link #release}.
+     */
+    public Snapshot acquire() {
+        while (true) {
+            Snapshot snapshot = published;
+            snapshot.readers.incrementAndGet();
+            // The writer may have recycled it between the read and the pin
+            if (snapshot == published) {
+                return snapshot;
+            }
+            snapshot.readers.decrementAndGet();
+        }
+    }
+
+    public void release(Snapshot snapshot) {
+        snapshot.readers.decrementAndGet();
+    }
+
+    /**
+     * Number of blasts in the working arrays, not counting queued spawns.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Spawns that were dropped because they landed too close to another blast.
+     */
+    public long getMerged() {
+        return merged.get();
+    }
+
+    /**
+     * Times a spawn found the ring full and had to empty it itself.
+     */
+    public long getOverflows() {
+        return overflows.get();
+    }
+
+    private int takePending() {
+        int before = size;
+        if (size + pending.capacity() > x.length) {
+            int capacity = Math.max(size + pending.capacity(), x.length * 2);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            r = Arrays.copyOf(r, capacity);
+            yields = Arrays.copyOf(yields, capacity);
+        }
+        int end = size + pending.drainTo(x, y, r, yields, size, x.length - size);
+        double distance = mergeDistance;
+        if (distance <= 0 || end == size) {
+            size = end;
+            return size - before;
+        }
+
+        grid.reset(distance, x.length);
+        for (int n = 0; n < size; n++) {
+            if (r[n] < distance) {
+                grid.add(n, x[n], y[n]);
+            }
+        }
+        int kept = size;
+        for (int n = size; n < end; n++) {
+            if (grid.near(x[n], y[n], x, y)) {
+                merged.incrementAndGet();
+                continue;
+            }
+            x[kept] = x[n];
+            y[kept] = y[n];
+            r[kept] = r[n];
+            yields[kept] = yields[n];
+            grid.add(kept, x[kept], y[kept]);
+            kept++;
+        }
+        size = kept;
+        return size - before;
+    }
+
+    private void publish() {
+        Snapshot previous = published;
+        Snapshot next = null;
+        for (int n = 0; n < spares.length && next == null; n++) {
+            Snapshot spare = spares[n];
+            if (spare == null) {
+                next = spares[n] = new Snapshot(size);
+            } else if (spare != previous && spare.readers.get() == 0) {
+                next = spare;
+            }
+        }
+        if (next == null) {
+            // Every spare is still being read, fall back to a fresh one
+            next = new Snapshot(size);
+        }
+        if (next.x.length < size) {
+            int capacity = Math.max(size, next.x.length * 2);
+            next.x = new int[capacity];
+            next.y = new int[capacity];
+            next.r = new float[capacity];
+        }
+        System.arraycopy(x, 0, next.x, 0, size);
+        System.arraycopy(y, 0, next.y, 0, size);
+        System.arraycopy(r, 0, next.r, 0, size);
+        next.size = size;
+        published = next;
+    }
+
+    /**
+     * Hash grid of blast indices with cells as large as the merge distance, so a spawn only has to
+     * look at the 3x3 cells around it.
+     */
+    private static final class MergeGrid {
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private double distance;
+        private long[] cells = new long[0];
+        private int[] heads = new int[0];
+        private int[] next = new int[0];
+
+        void reset(double distance, int capacity) {
+            this.distance = distance;
+            if (next.length < capacity) {
+                next = new int[capacity];
+            }
+            int slots = Integer.highestOneBit(Math.max(capacity, 8) - 1) << 2;
+            if (cells.length != slots) {
+                cells = new long[slots];
+                heads = new int[slots];
+            }
+            Arrays.fill(cells, EMPTY);
+        }
+
+        void add(int index, int bx, int by) {
+            int slot = slot(cell(bx), cell(by), true);
+            next[index] = heads[slot];
+            heads[slot] = index;
+        }
+
+        boolean near(int bx, int by, int[] xs, int[] ys) {
+            int cx = cell(bx);
+            int cy = cell(by);
+            double limit = distance * distance;
+            for (int i = cx - 1; i <= cx + 1; i++) {
+                for (int j = cy - 1; j <= cy + 1; j++) {
+                    int slot = slot(i, j, false);
+                    for (int n = slot < 0 ? -1 : heads[slot]; n >= 0; n = next[n]) {
+                        double dx = xs[n] - bx;
+                        double dy = ys[n] - by;
+                        if (dx * dx + dy * dy < limit) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        private int cell(int coordinate) {
+            return (int) Math.floor(coordinate / distance);
+        }
+
+        /**
+         * Open addressing slot of the cell, claimed for it when {@code create} is set, or -1 when absent.
+         */
+        private int slot(int cx, int cy, boolean create) {
+            long key = (long) cx << 32 | (cy & 0xFFFFFFFFL);
+            int mask = cells.length - 1;
+            int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 40) & mask;
+            while (cells[slot] != key) {
+                if (cells[slot] == EMPTY) {
+                    if (!create) {
+                        return -1;
+                    }
+                    cells[slot] = key;
+                    heads[slot] = -1;
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
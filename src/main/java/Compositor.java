@@ -0,0 +1,211 @@
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Keeps the layers of the board where Java2D can blit them fastest and draws them onto a frame.
+ * <p>
+ * The background and the effect layer live in {@link VolatileImage}s, which the pipeline may keep
+ * in video memory. Their contents can be lost at any time (display mode changes, another
+ * application taking the device), so every draw validates them first and fills them again from
+ * the source when they were restored or recreated. The effect layer is only uploaded again when
+ * the renderer reports a new version of it, and then only the part blasts were drawn in, now or
+ * at the last upload: the rest of the layer is clear in both.
+ * <p>
+ * Not thread-safe, the board draws from one thread at a time.
+ */
+public class Compositor {
+    private GraphicsConfiguration gc;
+
+    private VolatileImage background;
+    private BufferedImage backgroundSource;
+
+    private VolatileImage effect;
+    private BufferedImage effectSource;
+    private long effectVersion = -1;
+    // What of the effect layer held pixels at the last upload, the rest of the copy is clear
+    private final Rectangle effectDrawn = new Rectangle();
+    private final Rectangle effectUpload = new Rectangle();
+    private long uploads;
+    private long uploadedPixels;
+
+    /**
+     * Binds the configuration of the device the frames go to. Layers made for another one are dropped.
+     */
+    public void setGraphicsConfiguration(GraphicsConfiguration gc) {
+        if (gc != this.gc) {
+            this.gc = gc;
+            flush();
+        }
+    }
+
+    /**
+     * Draws {@code source} at the origin, from video memory unless it changed or was lost.
+     */
+    public void drawBackground(Graphics g, BufferedImage source) {
+        int status = background == null ? VolatileImage.IMAGE_INCOMPATIBLE : background.validate(gc);
+        if (status == VolatileImage.IMAGE_INCOMPATIBLE
+                || background.getWidth() != source.getWidth() || background.getHeight() != source.getHeight()) {
+            if (background != null) {
+                background.flush();
+            }
+            background = gc.createCompatibleVolatileImage(source.getWidth(), source.getHeight(), Transparency.OPAQUE);
+            status = VolatileImage.IMAGE_RESTORED;
+        }
+        if (status == VolatileImage.IMAGE_RESTORED || source != backgroundSource) {
+            upload(background, source);
+            backgroundSource = source;
+        }
+        g.drawImage(background, 0, 0, null);
+        if (background.contentsLost()) {
+            // Lost while drawing, upload again next time
+            backgroundSource = null;
+        }
+    }
+
+    /**
+     * Draws the translucent effect layer at the origin. It is uploaded from {@code source} only when
+     * {@code version} differs from the one uploaded last, or the copy in video memory was lost.
+     */
+    public void drawEffect(Graphics g, BufferedImage source, long version) {
+        drawEffect(g, source, version, null, source.getWidth(), source.getHeight());
+    }
+
+    /**
+     * {@link #drawEffect(Graphics, BufferedImage, long)} stretched to {@code width} x {@code height}
+     * with bilinear filtering, for a layer rendered at another scale than the board. When
+     * {@code drawn} is given, {@code source} is clear outside of it and only it and what was drawn
+     * at the last upload are uploaded; otherwise the whole layer is.
+     */
+    public void drawEffect(Graphics g, BufferedImage source, long version, Rectangle drawn, int width, int height) {
+        int status = effect == null ? VolatileImage.IMAGE_INCOMPATIBLE : effect.validate(gc);
+        if (status == VolatileImage.IMAGE_INCOMPATIBLE
+                || effect.getWidth() != source.getWidth() || effect.getHeight() != source.getHeight()) {
+            if (effect != null) {
+                effect.flush();
+            }
+            effect = gc.createCompatibleVolatileImage(source.getWidth(), source.getHeight(), Transparency.TRANSLUCENT);
+            status = VolatileImage.IMAGE_RESTORED;
+        }
+        if (status == VolatileImage.IMAGE_RESTORED || source != effectSource || (drawn == null && version != effectVersion)) {
+            effectUpload.setBounds(0, 0, source.getWidth(), source.getHeight());
+            upload(effect, source, effectUpload);
+            effectDrawn.setBounds(drawn != null ? drawn : effectUpload);
+        } else if (version != effectVersion) {
+            union(effectDrawn, drawn, effectUpload);
+            upload(effect, source, effectUpload);
+            effectDrawn.setBounds(drawn);
+        }
+        effectSource = source;
+        effectVersion = version;
+        if (width == effect.getWidth() && height == effect.getHeight()) {
+            g.drawImage(effect, 0, 0, null);
+        } else {
+            Graphics2D g2 = (Graphics2D) g;
+            Object interpolation = g2.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.drawImage(effect, 0, 0, width, height, null);
+            if (interpolation != null) {
+                g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+            }
+        }
+        if (effect.contentsLost()) {
+            effectVersion = -1;
+            effectSource = null;
+        }
+    }
+
+    /**
+     * Times the effect layer was copied to video memory.
+     */
+    public long getUploads() {
+        return uploads;
+    }
+
+    /**
+     * Pixels of the effect layer copied to video memory so far.
+     */
+    public long getUploadedPixels() {
+        return uploadedPixels;
+    }
+
+    /**
+     * Releases the layers, they are made again on the next draw.
+     */
+    public void flush() {
+        if (background != null) {
+            background.flush();
+            background = null;
+        }
+        if (effect != null) {
+            effect.flush();
+            effect = null;
+        }
+        backgroundSource = null;
+        effectSource = null;
+        effectVersion = -1;
+    }
+
+    private void upload(VolatileImage target, BufferedImage source, Rectangle area) {
+        if (area.isEmpty()) {
+            return;
+        }
+        Graphics2D g = target.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(source, area.x, area.y, area.x + area.width, area.y + area.height,
+                area.x, area.y, area.x + area.width, area.y + area.height, null);
+        g.dispose();
+        uploads++;
+        uploadedPixels += (long) area.width * area.height;
+    }
+
+    /**
+     * Sets {@code union} to the smallest rectangle holding {@code a} and {@code b}, where an empty one holds nothing.
+     */
+    private static void union(Rectangle a, Rectangle b, Rectangle union) {
+        if (a.isEmpty()) {
+            union.setBounds(b);
+        } else if (b.isEmpty()) {
+            union.setBounds(a);
+        } else {
+            int x0 = Math.min(a.x, b.x);
+            int y0 = Math.min(a.y, b.y);
+            union.setBounds(x0, y0, Math.max(a.x + a.width, b.x + b.width) - x0, Math.max(a.y + a.height, b.y + b.height) - y0);
+        }
+    }
+
+    private static void upload(VolatileImage target, BufferedImage source) {
+        Graphics2D g = target.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(source, 0, 0, null);
+        g.dispose();
+    }
+
+    /**
+     * Reads {@code resource} and scales it once to {@code size} x {@code size} pixels.
+     */
+    public static BufferedImage sprite(URL resource, int size) throws IOException {
+        BufferedImage source = ImageIO.read(resource);
+        BufferedImage scaled = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(source, 0, 0, size, size, null);
+        g.dispose();
+        return scaled;
+    }
+
+    /**
+     * Copy of {@code image} in the layout of {@code gc}, which Java2D can cache on the device.
+     */
+    public static BufferedImage compatible(BufferedImage image, GraphicsConfiguration gc) {
+        BufferedImage copy = gc.createCompatibleImage(image.getWidth(), image.getHeight(), image.getTransparency());
+        Graphics2D g = copy.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return copy;
+    }
+}
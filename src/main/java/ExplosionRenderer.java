@@ -0,0 +1,968 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Composes the cloud and shockwave layers of the explosions on top of a background.
+ * <p>
+ * Two paths produce the same pixels: the legacy one goes through {@link BufferedImage#getRGB}
+ * and {@link BufferedImage#setRGB}, the direct one indexes the {@link DataBufferInt} arrays
+ * behind the buffers and the background.
+ */
+public class ExplosionRenderer {
+    private static final double[][] GAUSS_2D = {
+            {1d / 16, 1d / 8, 1d / 16},
+            {1d / 8, 1d / 4, 1d / 8},
+            {1d / 16, 1d / 8, 1d / 16}
+    };
+
+    private final Random rand;
+    private final Random blastRandom = new Random();
+    private boolean directRaster;
+    // directRaster as of the last beginFrame, the layers are laid out for it
+    private boolean frameDirectRaster;
+    private TileRasterizer tiles;
+    private int levelOfDetail = LevelOfDetail.FULL;
+
+    // -Dexplosion.packedCloud=true keeps the cloud layer as one alpha byte per pixel on the direct path
+    private boolean packedCloud = Boolean.getBoolean("explosion.packedCloud");
+    private final FrameBuffers buffers;
+
+    private BufferedImage img;
+    private BufferedImage cloud_img;
+    private BufferedImage boomBuffer;
+    private Graphics boomGraphics;
+
+    private int[] imgPixels;
+    // Null while the cloud layer is packed into cloudAlpha
+    private int[] cloudPixels;
+    private byte[] cloudAlpha;
+    private int[] boomPixels;
+    private int width;
+    private int height;
+
+    // x0, y0, x1, y1 of every square drawn into img and boomBuffer since the last beginFrame
+    private int[] damage = new int[64];
+    private int damageCount;
+    private boolean clearAll;
+
+    // Bumped whenever img changes, so a copy of it elsewhere knows when it is stale
+    private long version;
+
+    private long lastCloudNanos = -1;
+    private long lastShockwaveNanos;
+    private long lastPixels;
+
+    private BufferedImage backgroundImage;
+    private BufferedImage backgroundSource;
+    private int[] backgroundPixels;
+    private int backgroundWidth;
+    private int backgroundHeight;
+
+    private double max_R;
+    private double fogHeight;
+
+    // -Dexplosion.tableBytes=N bounds the radial tables
+    private static final long TABLE_BYTES = Long.getLong("explosion.tableBytes", 32L << 20);
+    private RadialTables radialTables = new RadialTables(TABLE_BYTES);
+    // Built by prepare for the next max_R, taken by the first frame of it
+    private volatile RadialTables preparedTables;
+    // -Dexplosion.atlas=DIR draws full detail blasts from a BlastAtlas kept in DIR between runs
+    private File atlasDirectory = System.getProperty("explosion.atlas") != null ? new File(System.getProperty("explosion.atlas")) : null;
+    private BlastAtlas atlas;
+    // Settings the atlas was last opened for, it is null when they needed one too large
+    private double atlasMaxR = Double.NaN;
+    private double atlasFogHeight = Double.NaN;
+    // Opened by prepare for the next settings, taken by the first frame of them
+    private volatile PreparedAtlas preparedAtlas;
+
+    private static final class PreparedAtlas {
+        final double max_R;
+        final double fogHeight;
+        // Null when the settings need one too large
+        final BlastAtlas atlas;
+
+        PreparedAtlas(double max_R, double fogHeight, BlastAtlas atlas) {
+            this.max_R = max_R;
+            this.fogHeight = fogHeight;
+            this.atlas = atlas;
+        }
+    }
+
+    public ExplosionRenderer(Random rand, boolean directRaster) {
+        this.rand = rand;
+        this.directRaster = directRaster;
+        this.buffers = new FrameBuffers(packedCloud && directRaster);
+    }
+
+    public boolean isDirectRaster() {
+        return directRaster;
+    }
+
+    /**
+     * Switches between the direct path and the getRGB/setRGB one. Without a {@link TileRasterizer}
+     * both draw the same noise from the shared generator, so they render the same pixels.
+     */
+    public void setDirectRaster(boolean directRaster) {
+        if (directRaster != this.directRaster) {
+            // The legacy path does not record what it drew
+            clearAll = true;
+        }
+        this.directRaster = directRaster;
+    }
+
+    /**
+     * Draws full detail blasts from a {@link BlastAtlas} kept in {@code directory} from the next
+     * {@link #beginFrame} on, or from the radial tables when it is null. The pixels are the same.
+     */
+    public void setAtlasDirectory(File directory) {
+        atlasDirectory = directory;
+        atlas = null;
+        atlasMaxR = Double.NaN;
+        atlasFogHeight = Double.NaN;
+        preparedAtlas = null;
+    }
+
+    /**
+     * Keeps the cloud layer packed from the next {@link #beginFrame} on, see {@link FrameBuffers}.
+     * Only the direct path uses it packed.
+     */
+    public void setPackedCloud(boolean packedCloud) {
+        this.packedCloud = packedCloud;
+    }
+
+    public boolean isPackedCloud() {
+        return packedCloud;
+    }
+
+    /**
+     * Renders {@link #drawBlasts} tile by tile with {@code tiles}, or one blast after another when it is null.
+     * The tiles draw their gas noise from their own generators, so the pixels differ from the
+     * single-threaded path's, though not between numbers of threads.
+     */
+    public void setTileRasterizer(TileRasterizer tiles) {
+        this.tiles = tiles;
+    }
+
+    /**
+     * Detail the next {@link #drawBlasts} renders large blasts with on the direct path, one of the
+     * {@link LevelOfDetail} levels. The legacy path always renders everything.
+     */
+    public void setLevelOfDetail(int levelOfDetail) {
+        this.levelOfDetail = levelOfDetail;
+    }
+
+    public int getLevelOfDetail() {
+        return levelOfDetail;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    public BufferedImage getImage() {
+        return img;
+    }
+
+    /**
+     * Changes whenever {@link #getImage()} may have changed.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets {@code bounds} to what the blasts drawn since {@link #beginFrame} cover, empty when there
+     * were none. The effect layer is clear outside of it.
+     */
+    public void getDrawnBounds(Rectangle bounds) {
+        if (damageCount == 0) {
+            bounds.setBounds(0, 0, 0, 0);
+            return;
+        }
+        int x0 = Integer.MAX_VALUE;
+        int y0 = Integer.MAX_VALUE;
+        int x1 = Integer.MIN_VALUE;
+        int y1 = Integer.MIN_VALUE;
+        for (int n = 0; n < damageCount; n += 4) {
+            x0 = Math.min(x0, damage[n]);
+            y0 = Math.min(y0, damage[n + 1]);
+            x1 = Math.max(x1, damage[n + 2]);
+            y1 = Math.max(y1, damage[n + 3]);
+        }
+        bounds.setBounds(x0, y0, x1 - x0 + 1, y1 - y0 + 1);
+    }
+
+    /**
+     * The cloud layer, null while it is packed.
+     */
+    public BufferedImage getCloudImage() {
+        return cloud_img;
+    }
+
+    /**
+     * Builds what frames of {@code max_R} and {@code fogHeight} draw from, the radial tables of every
+     * radius and the atlas when one is used, on the calling thread. Frames of the current settings
+     * go on meanwhile, and the first frame of the new ones starts with it all in place.
+     */
+    public void prepare(double max_R, double fogHeight) {
+        RadialTables tables = new RadialTables(TABLE_BYTES);
+        tables.setMaxR(max_R);
+        int r = 0;
+        while (!tables.get(r).trimmed && tables.getBytes() < TABLE_BYTES / 2) {
+            r++;
+        }
+        preparedTables = tables;
+        if (atlasDirectory != null) {
+            preparedAtlas = new PreparedAtlas(max_R, fogHeight, BlastAtlas.open(atlasDirectory, max_R, fogHeight));
+        }
+    }
+
+    /**
+     * Clears what the previous frame drew into the shockwave layer and binds the background for the blasts drawn until the next call.
+     * The buffers follow {@code width} and {@code height}; when they change, the layers start over empty.
+     */
+    public void beginFrame(int width, int height, BufferedImage background, double max_R, double fogHeight) {
+        this.max_R = max_R;
+        this.fogHeight = fogHeight;
+        RadialTables prepared = preparedTables;
+        if (prepared != null && Double.compare(max_R, prepared.getMaxR()) == 0) {
+            preparedTables = null;
+            radialTables = prepared;
+        }
+        radialTables.setMaxR(max_R);
+        if (atlasDirectory != null && (Double.compare(max_R, atlasMaxR) != 0 || Double.compare(fogHeight, atlasFogHeight) != 0)) {
+            atlasMaxR = max_R;
+            atlasFogHeight = fogHeight;
+            PreparedAtlas next = preparedAtlas;
+            if (next != null && Double.compare(max_R, next.max_R) == 0 && Double.compare(fogHeight, next.fogHeight) == 0) {
+                preparedAtlas = null;
+                atlas = next.atlas;
+            } else {
+                // Settings nothing prepared, like the first ones
+                atlas = BlastAtlas.open(atlasDirectory, max_R, fogHeight);
+            }
+        }
+        if (boomGraphics != null) {
+            boomGraphics.dispose();
+            boomGraphics = null;
+        }
+
+        frameDirectRaster = directRaster;
+        if (img == null || width != this.width || height != this.height) {
+            // Surfaces come out of the buffers cleared
+            buffers.resize(width, height);
+            version++;
+        } else if (!frameDirectRaster || clearAll) {
+            // The legacy path does not record what it drew
+            Arrays.fill(imgPixels, 0);
+            Arrays.fill(boomPixels, 0);
+        } else {
+            // Only what the previous frame drew needs to go
+            for (int n = 0; n < damageCount; n += 4) {
+                for (int row = damage[n + 1]; row <= damage[n + 3]; row++) {
+                    Arrays.fill(imgPixels, row * width + damage[n], row * width + damage[n + 2] + 1, 0);
+                    Arrays.fill(boomPixels, row * width + damage[n], row * width + damage[n + 2] + 1, 0);
+                }
+            }
+        }
+        // The legacy path reads the cloud layer through its image
+        buffers.setPackedCloud(packedCloud && frameDirectRaster);
+        bindBuffers();
+        if (clearAll || damageCount > 0 || !frameDirectRaster) {
+            version++;
+        }
+        clearAll = false;
+        damageCount = 0;
+
+        bindBackground(background);
+    }
+
+    /**
+     * Draws one blast of radius {@code r} centered at ({@code x}, {@code y}) into the layers.
+     */
+    public void drawBlast(int x, int y, int r, Image boomImage) {
+        version++;
+        drawBoom(x, y, r, boomImage);
+        if (frameDirectRaster) {
+            lastPixels += shadeBlast(x, y, r, 0, width - 1, 0, height - 1, true, true, rand);
+        } else {
+            lastPixels += shadeBlastLegacy(x, y, r);
+        }
+    }
+
+    /**
+     * Draws the first {@code count} blasts, in order. With a {@link TileRasterizer} on the direct
+     * path they are rendered tile by tile on its pool, otherwise one after another.
+     */
+    public void drawBlasts(int[] xs, int[] ys, int[] rs, int count, Image boomImage) {
+        long start = System.nanoTime();
+        lastPixels = 0;
+        if (count > 0) {
+            version++;
+        }
+        if (frameDirectRaster && tiles != null) {
+            for (int k = 0; k < count; k++) {
+                drawBoom(xs[k], ys[k], rs[k], boomImage);
+            }
+            tiles.rasterize(this, xs, ys, rs, count, rand.nextLong());
+            lastPixels = tiles.getLastPixels();
+            lastCloudNanos = tiles.getLastCloudNanos();
+            lastShockwaveNanos = System.nanoTime() - start - lastCloudNanos;
+        } else {
+            for (int k = 0; k < count; k++) {
+                drawBlast(xs[k], ys[k], rs[k], boomImage);
+            }
+            // Both passes run pixel by pixel here, so the whole time counts as shockwave
+            lastCloudNanos = -1;
+            lastShockwaveNanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Time the last {@link #drawBlasts} spent in the cloud pass, -1 when it was interleaved with the shockwave pass.
+     */
+    public long getLastCloudNanos() {
+        return lastCloudNanos;
+    }
+
+    /**
+     * Time the last {@link #drawBlasts} spent in the shockwave pass, including the boom sprites.
+     */
+    public long getLastShockwaveNanos() {
+        return lastShockwaveNanos;
+    }
+
+    /**
+     * Pixels the last {@link #drawBlasts} shaded, counted once per blast covering them.
+     */
+    public long getLastPixels() {
+        return lastPixels;
+    }
+
+    /**
+     * Runs only the cloud pass of the first {@code count} blasts, in order, on the direct path. The
+     * cloud layer is the one thing that carries over from frame to frame, so calling this once per
+     * simulation tick makes it a function of the tick alone.
+     */
+    public void accumulateCloud(int[] xs, int[] ys, int[] rs, int count) {
+        for (int k = 0; k < count; k++) {
+            shadeBlast(xs[k], ys[k], rs[k], 0, width - 1, 0, height - 1, true, false, rand);
+        }
+    }
+
+    /**
+     * Draws the boom sprite and runs only the shockwave pass of the first {@code count} blasts, on
+     * the direct path. The gas noise of every blast comes from its own seed instead of the shared
+     * generator, so the frame does not depend on what was rendered before it.
+     */
+    public void drawShockwaves(int[] xs, int[] ys, int[] rs, long[] seeds, int count, Image boomImage) {
+        long start = System.nanoTime();
+        lastPixels = 0;
+        if (count > 0) {
+            version++;
+        }
+        for (int k = 0; k < count; k++) {
+            drawBoom(xs[k], ys[k], rs[k], boomImage);
+            blastRandom.setSeed(seeds[k]);
+            lastPixels += shadeBlast(xs[k], ys[k], rs[k], 0, width - 1, 0, height - 1, false, true, blastRandom);
+        }
+        lastCloudNanos = -1;
+        lastShockwaveNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * The layers, live. Only for saving and restoring the cloud layer between frames.
+     */
+    FrameBuffers getBuffers() {
+        return buffers;
+    }
+
+    /**
+     * Hands the layers back to the pool of {@link FrameBuffers}. The next {@link #beginFrame} takes them again.
+     */
+    public void release() {
+        if (boomGraphics != null) {
+            boomGraphics.dispose();
+            boomGraphics = null;
+        }
+        buffers.release();
+        bindBuffers();
+        damageCount = 0;
+        clearAll = false;
+    }
+
+    private void bindBuffers() {
+        img = buffers.getImage();
+        boomBuffer = buffers.getBoom();
+        cloud_img = buffers.getCloud();
+        imgPixels = buffers.imagePixels();
+        boomPixels = buffers.boomPixels();
+        cloudPixels = buffers.cloudPixels();
+        cloudAlpha = buffers.cloudAlpha();
+        width = buffers.getWidth();
+        height = buffers.getHeight();
+    }
+
+    private void drawBoom(int x, int y, int r, Image boomImage) {
+        markDamage(x, y, Math.max(r, Math.max(boomImage.getWidth(null), boomImage.getHeight(null)) / 2 + 1));
+
+        // One Graphics serves every boom of the frame, it is disposed in the next beginFrame
+        if (boomGraphics == null) {
+            boomGraphics = boomBuffer.getGraphics();
+        }
+        boomGraphics.drawImage(boomImage, x - boomImage.getWidth(null) / 2, y - boomImage.getHeight(null) / 2, null);
+    }
+
+    /**
+     * Records the square of half size {@code reach} around ({@code x}, {@code y}), clipped to the buffers,
+     * as drawn in this frame.
+     */
+    private void markDamage(int x, int y, int reach) {
+        int x0 = Math.max(x - reach, 0);
+        int y0 = Math.max(y - reach, 0);
+        int x1 = Math.min(x + reach, width - 1);
+        int y1 = Math.min(y + reach, height - 1);
+        if (x0 > x1 || y0 > y1) {
+            return;
+        }
+        if (damageCount == damage.length) {
+            damage = Arrays.copyOf(damage, damageCount * 2);
+        }
+        damage[damageCount++] = x0;
+        damage[damageCount++] = y0;
+        damage[damageCount++] = x1;
+        damage[damageCount++] = y1;
+    }
+
+    /**
+     * Runs the cloud and/or shockwave pass of one blast over the pixels inside [x0, x1] x [y0, y1],
+     * drawing the gas noise from {@code rnd}.
+     */
+    int shadeBlast(int x, int y, int r, int x0, int x1, int y0, int y1, boolean cloud, boolean shockwave, Random rnd) {
+        int step = LevelOfDetail.step(levelOfDetail, r);
+        if (atlas != null && step == 1) {
+            return atlas.isTrimmed(r) ? 0 : shadeBlastAtlas(atlas, x, y, r, x0, x1, y0, y1, cloud, shockwave, rnd);
+        }
+        RadialTables.Table table = radialTables.get(r);
+        if (table.trimmed) {
+            return 0;
+        }
+        if (step > 1) {
+            return shadeBlastCoarse(table, x, y, x0, x1, y0, y1, cloud, shockwave, rnd, step);
+        }
+        boolean blur = LevelOfDetail.blur(levelOfDetail, r);
+        int touched = 0;
+        double[] cloudAlpha = table.cloudAlpha;
+        short[] displacement = table.displacement;
+        short[] span = table.span;
+        short[] shockwaveSpan = table.shockwaveSpan;
+        int stride = table.stride;
+
+        int left = Math.max(x - r, x0);
+        int right = Math.min(x + r, x1);
+        for (int i = left; i <= right; i++) {
+            int di = Math.abs(i - x);
+            int si = i < x ? 1 : -1;
+            // The column of the circle, clipped, instead of testing the whole bounding square
+            int top = Math.max(y - span[di], y0);
+            int bottom = Math.min(y + span[di], y1);
+            int reach = shockwave ? shockwaveSpan[di] : -1;
+            touched += Math.max(bottom - top + 1, 0);
+            for (int j = top; j <= bottom; j++) {
+                int dj = Math.abs(j - y);
+                int index = di * stride + dj;
+
+                if (cloud) {
+                    setCloudPixel(i, j, table.alphaCloudLut, cloudAlpha[index]);
+                }
+                if (dj <= reach) {
+                    int newi = x - si * displacement[index];
+                    int newj = y - (j < y ? 1 : -1) * displacement[dj * stride + di];
+
+                    if (0 <= newi && newi < width && 0 <= newj && newj < height) {
+                        setShockwavePixel(i, j, newi, newj, table.alphaLut, blur, rnd);
+                    }
+                }
+            }
+        }
+        return touched;
+    }
+
+    /**
+     * {@link #shadeBlast} from the prerendered quadrant of radius {@code r} in {@code atlas}.
+     */
+    private int shadeBlastAtlas(BlastAtlas atlas, int x, int y, int r, int x0, int x1, int y0, int y1,
+                                boolean cloud, boolean shockwave, Random rnd) {
+        boolean blur = LevelOfDetail.blur(levelOfDetail, r);
+        int touched = 0;
+        byte[] cloudAlphas = atlas.cloud;
+        int[] displacement = atlas.displacement;
+        short[] span = atlas.span;
+        short[] shockwaveSpan = atlas.shockwaveSpan;
+        int base = atlas.base(r);
+        int columns = atlas.spanBase(r);
+        int stride = r + 1;
+        int[] alphaLut = atlas.alphaLut(r);
+        int[] alphaCloudLut = atlas.alphaCloudLut(r);
+
+        int left = Math.max(x - r, x0);
+        int right = Math.min(x + r, x1);
+        for (int i = left; i <= right; i++) {
+            int di = Math.abs(i - x);
+            int si = i < x ? 1 : -1;
+            int top = Math.max(y - span[columns + di], y0);
+            int bottom = Math.min(y + span[columns + di], y1);
+            int reach = shockwave ? shockwaveSpan[columns + di] : -1;
+            touched += Math.max(bottom - top + 1, 0);
+            for (int j = top; j <= bottom; j++) {
+                int dj = Math.abs(j - y);
+                int index = base + di * stride + dj;
+
+                if (cloud) {
+                    blendCloudPixel(i, j, alphaCloudLut, (cloudAlphas[index] & 0xFF) << 24 | 0xFFFFFF);
+                }
+                if (dj <= reach) {
+                    int d = displacement[index];
+                    int newi = x - si * (d >> 16);
+                    int newj = y - (j < y ? 1 : -1) * (d & 0xFFFF);
+
+                    if (0 <= newi && newi < width && 0 <= newj && newj < height) {
+                        setShockwavePixel(i, j, newi, newj, alphaLut, blur, rnd);
+                    }
+                }
+            }
+        }
+        return touched;
+    }
+
+    /**
+     * {@link #shadeBlast} at a lower resolution: one pixel of every {@code step} x {@code step} block
+     * is shaded, without the blur, and its color is copied to the rest of the block that the blast
+     * covers. The pixel shaded is the block's nearest to the center, which is inside the blast
+     * whenever any of the block is. Blocks are aligned to the image, so they never straddle two tiles.
+     */
+    private int shadeBlastCoarse(RadialTables.Table table, int x, int y, int x0, int x1, int y0, int y1,
+                                 boolean cloud, boolean shockwave, Random rnd, int step) {
+        int r = table.r;
+        byte[] mask = table.mask;
+        double[] cloudAlpha = table.cloudAlpha;
+        short[] displacement = table.displacement;
+        short[] span = table.span;
+        int stride = table.stride;
+        int touched = 0;
+
+        int left = Math.max(x - r, x0);
+        int right = Math.min(x + r, x1);
+        int top = Math.max(y - r, y0);
+        int bottom = Math.min(y + r, y1);
+        for (int i = left; i <= right; i = (i / step + 1) * step) {
+            int blockRight = Math.min((i / step + 1) * step - 1, right);
+            // The block's column nearest the center, its span is the longest of the block's
+            int ci = Math.max(i, Math.min(x, blockRight));
+            int di = Math.abs(ci - x);
+            int si = ci < x ? 1 : -1;
+            int last = Math.min(bottom, y + span[di]);
+            for (int j = Math.max(top, y - span[di]); j <= last; j = (j / step + 1) * step) {
+                int blockBottom = Math.min((j / step + 1) * step - 1, bottom);
+                int cj = Math.max(j, Math.min(y, blockBottom));
+                int dj = Math.abs(cj - y);
+                int index = di * stride + dj;
+                byte m = mask[index];
+                if (m == RadialTables.OUTSIDE) {
+                    continue;
+                }
+
+                touched += blockPixels(span, x, y, i, blockRight, j, blockBottom);
+                if (cloud) {
+                    setCloudPixel(ci, cj, table.alphaCloudLut, cloudAlpha[index]);
+                    if (this.cloudAlpha != null) {
+                        fillBlock(this.cloudAlpha, this.cloudAlpha[cj * width + ci], mask, stride, x, y, i, blockRight, j, blockBottom);
+                    } else {
+                        fillBlock(cloudPixels, cloudPixels[cj * width + ci], mask, stride, x, y, i, blockRight, j, blockBottom, RadialTables.CLOUD);
+                    }
+                }
+                if (shockwave && m == RadialTables.SHOCKWAVE) {
+                    int newi = x - si * displacement[index];
+                    int newj = y - (cj < y ? 1 : -1) * displacement[dj * stride + di];
+
+                    if (0 <= newi && newi < width && 0 <= newj && newj < height) {
+                        setShockwavePixel(ci, cj, newi, newj, table.alphaLut, false, rnd);
+                        fillBlock(imgPixels, imgPixels[cj * width + ci], mask, stride, x, y, i, blockRight, j, blockBottom, RadialTables.SHOCKWAVE);
+                    }
+                }
+            }
+        }
+        return touched;
+    }
+
+    /**
+     * Pixels of [i0, i1] x [j0, j1] inside the blast of {@code span} centered at ({@code x}, {@code y}).
+     */
+    private static int blockPixels(short[] span, int x, int y, int i0, int i1, int j0, int j1) {
+        int pixels = 0;
+        for (int i = i0; i <= i1; i++) {
+            int s = span[Math.abs(i - x)];
+            pixels += Math.max(Math.min(j1, y + s) - Math.max(j0, y - s) + 1, 0);
+        }
+        return pixels;
+    }
+
+    /**
+     * Sets the pixels of [i0, i1] x [j0, j1] whose mask is at least {@code inside} to {@code argb}.
+     */
+    private void fillBlock(int[] pixels, int argb, byte[] mask, int stride, int x, int y, int i0, int i1, int j0, int j1, byte inside) {
+        for (int i = i0; i <= i1; i++) {
+            int di = Math.abs(i - x);
+            for (int j = j0; j <= j1; j++) {
+                if (mask[di * stride + Math.abs(j - y)] >= inside) {
+                    pixels[j * width + i] = argb;
+                }
+            }
+        }
+    }
+
+    /**
+     * {@link #fillBlock} for the packed cloud layer.
+     */
+    private void fillBlock(byte[] alphas, byte alpha, byte[] mask, int stride, int x, int y, int i0, int i1, int j0, int j1) {
+        for (int i = i0; i <= i1; i++) {
+            int di = Math.abs(i - x);
+            for (int j = j0; j <= j1; j++) {
+                if (mask[di * stride + Math.abs(j - y)] >= RadialTables.CLOUD) {
+                    alphas[j * width + i] = alpha;
+                }
+            }
+        }
+    }
+
+    private int shadeBlastLegacy(int x, int y, int r) {
+        double radiusPercent = (r + 0.01 * max_R) / max_R; // this adds 0.01 to max value of the ratio, to trim that frame later
+        double alphaPercent = (1 - Math.pow(2 * radiusPercent - 1, 2));
+        double alphaCloudPercent = (1 - Math.pow(2 * radiusPercent - 1, 4));
+        double baseline = 1;
+
+        /* Trim values above 1 because of some Swing bug */
+        if (radiusPercent > 1) {
+            return 0;
+        }
+        int touched = 0;
+
+        int left = x - r;
+        int right = x + r;
+        for (int i = left; i <= right; i++) {
+            if (i < 0 || i >= width) continue;
+
+            int top = y - r;
+            int bottom = y + r;
+            for (int j = top; j <= bottom; j++) {
+                if (j < 0 || j >= height) continue;
+
+                double hypotR = Math.hypot(i - x, j - y);
+
+                if (hypotR <= r) {
+                    touched++;
+                    double z = Math.hypot(hypotR, r);
+                    double p = 20 * r / (z + 20 * r); // This adds curviture to the gas cloud
+
+                    int di = x - i;
+                    int dj = y - j;
+
+                    double newdi = p * di;
+                    double newdj = p * dj;
+
+                    int newi = x - (int) newdi;
+                    int newj = y - (int) newdj;
+
+                    setCloudPixel(cloud_img, i, j, backgroundImage, alphaCloudPercent, x, y, r);
+                    if (hypotR <= r - 2) {
+                        if (0 <= newi && newi < width && 0 <= newj && newj < height) {
+                            setShockwavePixel(boomBuffer, img, i, j, backgroundImage, cloud_img, newi, newj, baseline * alphaPercent);
+                        }
+                    }
+                }
+            }
+        }
+        return touched;
+    }
+
+    private void bindBackground(BufferedImage background) {
+        backgroundImage = background;
+        if (background == backgroundSource) {
+            return;
+        }
+        backgroundSource = background;
+
+        // Any other image type would need a ColorModel conversion per pixel, so it is converted once here
+        BufferedImage argb = BackgroundCache.toIntArgb(background);
+        backgroundPixels = pixels(argb);
+        backgroundWidth = argb.getWidth();
+        backgroundHeight = argb.getHeight();
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    private void setCloudPixel(BufferedImage cloudBuffer, int i, int j, BufferedImage newBuffer, double alpha, int x, int y, int r) {
+        double a = cloudAlpha(i, j, x, y, r);
+        int ah = (int) ((255  + 255 * fogHeight) / 2);
+        int white = argb(ah, 255, 255, 255);
+
+        int oldArgb = cloudBuffer.getRGB(i, j);
+
+        if (oldArgb == 0) {
+            cloudBuffer.setRGB(i, j, setAlphaPercent(setAlphaPercent(white, a), alpha));
+        } else {
+
+            int newArgb = mergeColors(cloudBuffer.getRGB(i, j), setAlphaPercent(white, a));
+
+            cloudBuffer.setRGB(i, j, setAlphaPercent(newArgb, alpha));
+        }
+    }
+
+    private void setCloudPixel(int i, int j, int[] alphaLut, double a) {
+        int ah = (int) ((255  + 255 * fogHeight) / 2);
+        int white = argb(ah, 255, 255, 255);
+
+        int index = j * width + i;
+        int oldArgb = cloudArgb(index);
+
+        int argb = PixelKernels.cloud(oldArgb, white, a, alphaLut);
+        if (cloudAlpha != null) {
+            cloudAlpha[index] = (byte) (argb >>> 24);
+        } else {
+            cloudPixels[index] = argb;
+        }
+    }
+
+    /**
+     * {@link #setCloudPixel(int, int, int[], double)} with the white at the cloud density from the atlas.
+     */
+    private void blendCloudPixel(int i, int j, int[] alphaLut, int fresh) {
+        int index = j * width + i;
+        int argb = PixelKernels.cloud(cloudArgb(index), fresh, alphaLut);
+        if (cloudAlpha != null) {
+            cloudAlpha[index] = (byte) (argb >>> 24);
+        } else {
+            cloudPixels[index] = argb;
+        }
+    }
+
+    private int cloudArgb(int index) {
+        return cloudAlpha != null ? FrameBuffers.unpack(cloudAlpha[index]) : cloudPixels[index];
+    }
+
+    private static double cloudAlpha(int i, int j, int x, int y, int r) {
+        return Math.exp(-Math.pow(Math.pow(2 * (i - x) / (double) r, 2) + Math.pow(2 * (j - y) / (double) r, 2) - 2, 2));
+    }
+
+    private void setShockwavePixel(BufferedImage boomBuffer, BufferedImage shockwaveBuffer, int i, int j, BufferedImage newBuffer, BufferedImage cloudBuffer, int newi, int newj, double alpha) {
+        int oldArgb = shockwaveBuffer.getRGB(i, j);
+
+        // Random noise emulates the particles of gas
+        int noisyinew = noisyIndex(newi, 0, newBuffer.getWidth() - 1);
+        int noisyjnew = noisyIndex(newj, 0, newBuffer.getHeight() - 1);
+
+        if (oldArgb == 0) {
+            int argb = mergeColors(boomBuffer.getRGB(noisyinew, noisyjnew), mergeBufferPixels(newBuffer, cloudBuffer, noisyinew, noisyjnew));
+            shockwaveBuffer.setRGB(i, j, setAlphaPercent(argb, alpha));
+        } else {
+            // Random noise emulates the particles of gas
+            int noisyiold = noisyIndex(i, 0, shockwaveBuffer.getWidth() - 1);
+            int noisyjold = noisyIndex(j, 0, shockwaveBuffer.getHeight() - 1);
+
+            int noisyOldArgb = gauss(noisyiold, noisyjold, shockwaveBuffer);
+            int newArgb = mergeBufferPixels(newBuffer, cloudBuffer, noisyinew, noisyjnew);
+
+            shockwaveBuffer.setRGB(i, j, setAlphaPercent(mergeColors(boomBuffer.getRGB(noisyinew, noisyjnew), avg2(noisyOldArgb, newArgb)), alpha));
+        }
+    }
+
+    private void setShockwavePixel(int i, int j, int newi, int newj, int[] alphaLut, boolean blur, Random rnd) {
+        int index = j * width + i;
+        int oldArgb = imgPixels[index];
+
+        // Random noise emulates the particles of gas
+        int noisyinew = noisyIndex(rnd, newi, 0, backgroundWidth - 1);
+        int noisyjnew = noisyIndex(rnd, newj, 0, backgroundHeight - 1);
+        int boomArgb = boomPixels[noisyjnew * width + noisyinew];
+
+        if (oldArgb == 0) {
+            int argb = PixelKernels.mergeColors(boomArgb, mergeBufferPixels(noisyinew, noisyjnew));
+            imgPixels[index] = PixelKernels.setAlpha(argb, alphaLut);
+        } else {
+            // Random noise emulates the particles of gas
+            int noisyiold = noisyIndex(rnd, i, 0, width - 1);
+            int noisyjold = noisyIndex(rnd, j, 0, height - 1);
+
+            int noisyOldArgb = blur ? PixelKernels.gauss(noisyiold, noisyjold, imgPixels, width, height) : imgPixels[noisyjold * width + noisyiold];
+            int newArgb = mergeBufferPixels(noisyinew, noisyjnew);
+
+            imgPixels[index] = PixelKernels.setAlpha(PixelKernels.mergeColors(boomArgb, PixelKernels.avg2(noisyOldArgb, newArgb)), alphaLut);
+        }
+    }
+
+    private int noisyIndex(int index, int minIndex, int maxIndex) {
+        return noisyIndex(rand, index, minIndex, maxIndex);
+    }
+
+    private static int noisyIndex(Random rnd, int index, int minIndex, int maxIndex) {
+        int randi = rnd.nextInt(2) - 1;
+        int noisyi = index + randi;
+
+        if (noisyi < minIndex || noisyi > maxIndex) {
+            noisyi = index;
+        }
+
+        return noisyi;
+    }
+
+    int mergeBufferPixels(BufferedImage b1, BufferedImage b2, int i, int j) {
+        int w = Math.min(b1.getWidth(), b2.getWidth());
+        int h = Math.min(b1.getHeight(), b2.getHeight());
+        if (0 <= i && i < w && 0 <= j && j < h) {
+            return mergeColors(b1.getRGB(i, j), b2.getRGB(i, j));
+        }
+        return (w == b1.getWidth()) ? b1.getRGB(i, j) : b2.getRGB(i, j);
+    }
+
+    private int mergeBufferPixels(int i, int j) {
+        // (i, j) always lies on the background, so outside of the cloud layer the background shows through
+        if (i < width && j < height) {
+            return PixelKernels.mergeColors(backgroundPixels[j * backgroundWidth + i], cloudArgb(j * width + i));
+        }
+        return backgroundPixels[j * backgroundWidth + i];
+    }
+
+    static int mergeColors(int backgroundColor, int foregroundColor) {
+        float ab = getAlpha(backgroundColor) / 255f;
+        float af = getAlpha(foregroundColor) / 255f;
+
+        if (ab == 0 && af == 0) {
+            return 0;
+        }
+
+        float ap = ab + af;
+
+        float factorb = ab / ap;
+        float factorf = af / ap;
+
+        int br = ((backgroundColor >> 16) & 255);
+        int bg = ((backgroundColor >> 8) & 255);
+        int bb = (backgroundColor & 255);
+
+        int fr = ((foregroundColor >> 16) & 255);
+        int fg = ((foregroundColor >> 8) & 255);
+        int fb = (foregroundColor & 255);
+
+        int a = (int) (getAlpha(backgroundColor) * factorb + getAlpha(foregroundColor) * factorf);
+        int r = (int) (br * factorb + fr * factorf);
+        int g = (int) (bg * factorb + fg * factorf);
+        int b = (int) (bb * factorb + fb * factorf);
+        return argb(a, r, g, b);
+    }
+
+    static int gauss(int i, int j, BufferedImage bi) {
+        double a = 0;
+        double r = 0;
+        double g = 0;
+        double b = 0;
+
+        for (int x = 0; x <= 2; x++) {
+            for (int y = 0; y <= 2; y++) {
+                int xx = i - 1 + x;
+                int yy = j - 1 + y;
+
+                if (0 < xx & xx < bi.getWidth() && 0 < yy && yy < bi.getHeight()) {
+                    int argb = bi.getRGB(xx, yy);
+                    double k = GAUSS_2D[x][y];
+                    a += k * ((argb >> 24) & 255);
+                    r += k * ((argb >> 16) & 255);
+                    g += k * ((argb >> 8) & 255);
+                    b += k * (argb & 255);
+                }
+            }
+        }
+
+        return argb((int) a, (int) r, (int) g, (int) b);
+    }
+
+    static int gauss(int i, int j, int[] pixels, int w, int h) {
+        double a = 0;
+        double r = 0;
+        double g = 0;
+        double b = 0;
+
+        for (int x = 0; x <= 2; x++) {
+            for (int y = 0; y <= 2; y++) {
+                int xx = i - 1 + x;
+                int yy = j - 1 + y;
+
+                if (0 < xx & xx < w && 0 < yy && yy < h) {
+                    int argb = pixels[yy * w + xx];
+                    double k = GAUSS_2D[x][y];
+                    a += k * ((argb >> 24) & 255);
+                    r += k * ((argb >> 16) & 255);
+                    g += k * ((argb >> 8) & 255);
+                    b += k * (argb & 255);
+                }
+            }
+        }
+
+        return argb((int) a, (int) r, (int) g, (int) b);
+    }
+
+    static int avg2(int argb1, int argb2) {
+        double a = 0;
+        double r = 0;
+        double g = 0;
+        double b = 0;
+
+        a += ((argb1 >> 24) & 255);
+        r += ((argb1 >> 16) & 255);
+        g += ((argb1 >> 8) & 255);
+        b += (argb1 & 255);
+
+        a += ((argb2 >> 24) & 255);
+        r += ((argb2 >> 16) & 255);
+        g += ((argb2 >> 8) & 255);
+        b += (argb2 & 255);
+
+        return argb((int) a / 2, (int) r / 2, (int) g / 2, (int) b / 2);
+    }
+
+    static int argb(int a, int r, int g, int b) {
+        return ((a & 0xFF) << 24) |
+                ((r & 0xFF) << 16) |
+                ((g & 0xFF) << 8) |
+                ((b & 0xFF));
+    }
+
+    static int setAlpha(int argb, int alpha) {
+        int a = (alpha & 255);
+        int r = ((argb >> 16) & 255);
+        int g = ((argb >> 8) & 255);
+        int b = (argb & 255);
+
+        return argb(a, r, g, b);
+    }
+
+    static int setAlphaPercent(int argb, double percent) {
+        int a = ((argb >> 24) & 255);
+        double alpha = a * percent;
+
+        return setAlpha(argb, (int) alpha);
+    }
+
+    static int getAlpha(int argb) {
+        return (argb >> 24) & 255;
+    }
+}
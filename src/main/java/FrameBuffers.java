@@ -0,0 +1,278 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The full-board surfaces a renderer works in: the shockwave layer, the boom sprites and the cloud
+ * layer. They follow the board size, and the ones a renderer lets go of wait in a pool shared by all
+ * renderers, so a board going back to an earlier size, or the next renderer of the same size, gets
+ * them without allocating.
+ * <p>
+ * The cloud is white everywhere, only its alpha varies, so it can also be kept packed as one alpha
+ * byte per pixel, a quarter of the memory. Unpacking gives pure white, while the full layer lets
+ * the rounding of repeated merges darken its color by a few levels, so the packed cloud is a close
+ * approximation rather than the same pixels.
+ */
+public class FrameBuffers {
+    // Bytes of released surfaces kept for reuse, shared by every renderer
+    private static final long POOL_BYTES = Long.getLong("explosion.bufferPoolBytes", 64L << 20);
+
+    private static final List<BufferedImage> IMAGES = new ArrayList<>();
+    private static final List<byte[]> ALPHAS = new ArrayList<>();
+    private static long pooledBytes;
+    private static long reuses;
+
+    private int width;
+    private int height;
+    private BufferedImage image;
+    private BufferedImage boom;
+    private BufferedImage cloud;
+    private byte[] cloudAlpha;
+    private boolean packedCloud;
+
+    private int[] imagePixels;
+    private int[] boomPixels;
+    private int[] cloudPixels;
+
+    public FrameBuffers(boolean packedCloud) {
+        this.packedCloud = packedCloud;
+    }
+
+    /**
+     * Makes every surface {@code width} x {@code height}, cleared. Does nothing when they already are that size.
+     */
+    public void resize(int width, int height) {
+        if (image != null && width == this.width && height == this.height) {
+            return;
+        }
+        release();
+        this.width = width;
+        this.height = height;
+        image = acquireImage(width, height);
+        boom = acquireImage(width, height);
+        if (packedCloud) {
+            cloudAlpha = acquireAlpha(width * height);
+        } else {
+            cloud = acquireImage(width, height);
+        }
+        bind();
+    }
+
+    /**
+     * Hands every surface to the pool. The next {@link #resize} takes new ones.
+     */
+    public void release() {
+        if (image == null) {
+            return;
+        }
+        offer(image);
+        offer(boom);
+        if (cloud != null) {
+            offer(cloud);
+        }
+        if (cloudAlpha != null) {
+            offer(cloudAlpha);
+        }
+        image = boom = cloud = null;
+        cloudAlpha = null;
+        imagePixels = boomPixels = cloudPixels = null;
+    }
+
+    /**
+     * Switches the cloud layer between full ARGB and packed alpha, converting what it holds.
+     */
+    public void setPackedCloud(boolean packedCloud) {
+        if (packedCloud == this.packedCloud) {
+            return;
+        }
+        this.packedCloud = packedCloud;
+        if (image == null) {
+            return;
+        }
+        if (packedCloud) {
+            cloudAlpha = acquireAlpha(width * height);
+            for (int n = 0; n < cloudPixels.length; n++) {
+                cloudAlpha[n] = (byte) (cloudPixels[n] >>> 24);
+            }
+            offer(cloud);
+            cloud = null;
+        } else {
+            cloud = acquireImage(width, height);
+            int[] pixels = pixels(cloud);
+            for (int n = 0; n < cloudAlpha.length; n++) {
+                pixels[n] = unpack(cloudAlpha[n]);
+            }
+            offer(cloudAlpha);
+            cloudAlpha = null;
+        }
+        bind();
+    }
+
+    public boolean isPackedCloud() {
+        return packedCloud;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    public BufferedImage getBoom() {
+        return boom;
+    }
+
+    /**
+     * The cloud layer as an image, null while it is packed.
+     */
+    public BufferedImage getCloud() {
+        return cloud;
+    }
+
+    int[] imagePixels() {
+        return imagePixels;
+    }
+
+    int[] boomPixels() {
+        return boomPixels;
+    }
+
+    /**
+     * The cloud layer's pixels, null while it is packed.
+     */
+    int[] cloudPixels() {
+        return cloudPixels;
+    }
+
+    /**
+     * The packed cloud layer, null while it is full ARGB.
+     */
+    byte[] cloudAlpha() {
+        return cloudAlpha;
+    }
+
+    public void clearCloud() {
+        if (cloudPixels != null) {
+            Arrays.fill(cloudPixels, 0);
+        } else if (cloudAlpha != null) {
+            Arrays.fill(cloudAlpha, (byte) 0);
+        }
+    }
+
+    /**
+     * Size of the cloud layer as written by {@link #writeCloud}.
+     */
+    public int cloudBytes() {
+        return packedCloud ? width * height : width * height * 4;
+    }
+
+    public void writeCloud(ByteBuffer out) {
+        if (packedCloud) {
+            out.put(cloudAlpha);
+        } else {
+            out.asIntBuffer().put(cloudPixels);
+        }
+    }
+
+    public void readCloud(ByteBuffer in) {
+        if (packedCloud) {
+            in.get(cloudAlpha);
+        } else {
+            in.asIntBuffer().get(cloudPixels);
+        }
+    }
+
+    /**
+     * The white cloud pixel of alpha {@code alpha}, 0 where there is no cloud.
+     */
+    static int unpack(byte alpha) {
+        return alpha == 0 ? 0 : alpha << 24 | 0xFFFFFF;
+    }
+
+    /**
+     * Surfaces released and taken again instead of allocated, over all renderers.
+     */
+    public static synchronized long getReuses() {
+        return reuses;
+    }
+
+    public static synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    private void bind() {
+        imagePixels = pixels(image);
+        boomPixels = pixels(boom);
+        cloudPixels = cloud != null ? pixels(cloud) : null;
+    }
+
+    private static BufferedImage acquireImage(int width, int height) {
+        BufferedImage image = null;
+        synchronized (FrameBuffers.class) {
+            for (int n = IMAGES.size() - 1; n >= 0; n--) {
+                if (IMAGES.get(n).getWidth() == width && IMAGES.get(n).getHeight() == height) {
+                    image = IMAGES.remove(n);
+                    pooledBytes -= width * height * 4L;
+                    reuses++;
+                    break;
+                }
+            }
+        }
+        if (image == null) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        Arrays.fill(pixels(image), 0);
+        return image;
+    }
+
+    private static byte[] acquireAlpha(int length) {
+        byte[] alpha = null;
+        synchronized (FrameBuffers.class) {
+            for (int n = ALPHAS.size() - 1; n >= 0; n--) {
+                if (ALPHAS.get(n).length == length) {
+                    alpha = ALPHAS.remove(n);
+                    pooledBytes -= length;
+                    reuses++;
+                    break;
+                }
+            }
+        }
+        if (alpha == null) {
+            return new byte[length];
+        }
+        Arrays.fill(alpha, (byte) 0);
+        return alpha;
+    }
+
+    private static void offer(BufferedImage image) {
+        long bytes = image.getWidth() * (long) image.getHeight() * 4;
+        synchronized (FrameBuffers.class) {
+            if (pooledBytes + bytes <= POOL_BYTES) {
+                IMAGES.add(image);
+                pooledBytes += bytes;
+            }
+        }
+    }
+
+    private static void offer(byte[] alpha) {
+        synchronized (FrameBuffers.class) {
+            if (pooledBytes + alpha.length <= POOL_BYTES) {
+                ALPHAS.add(alpha);
+                pooledBytes += alpha.length;
+            }
+        }
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+}
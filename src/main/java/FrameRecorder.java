@@ -0,0 +1,347 @@
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Records the board to a video file while it plays.
+ * <p>
+ * The render thread only copies what a frame is made of: the part of the effect layer blasts were
+ * drawn in, into a frame from a small pool, and the crosshairs. A board background is never drawn
+ * into once it is set, so it is kept by reference. A map background is not taken at all: the two
+ * images {@link MapViewport} alternates are refilled while the encoder may still be reading, so the
+ * frame keeps the tiles and the origin, and the encoder copies the map out of the tiles into the
+ * frame's own image. An encoder thread composes the frames the way the board does and writes them.
+ * When the encoder falls behind and the pool is empty, the frame is dropped and counted, the render
+ * thread never waits.
+ * <p>
+ * The video runs at a fixed rate in real time: a frame goes in the period it was rendered in, and
+ * periods the board rendered nothing in, because it was idle or a frame was dropped, repeat the
+ * previous frame.
+ */
+public class FrameRecorder {
+    // -Dexplosion.recordQueue=N frames rendered but not yet encoded before new ones are dropped
+    private static final int QUEUE = Integer.getInteger("explosion.recordQueue", 6);
+
+    private static final class Frame {
+        BufferedImage effect;
+        // What of effect holds pixels, the rest is clear
+        final Rectangle drawn = new Rectangle();
+        BufferedImage background;
+        // Set instead of background while a map is open
+        MapTiles map;
+        int mapX;
+        int mapY;
+        // The map under the frame, filled by the encoder
+        BufferedImage mapBackground;
+        double zoom;
+        double effectScale;
+        int boardWidth;
+        int boardHeight;
+        int[] crosshairXs = new int[16];
+        int[] crosshairYs = new int[16];
+        int crosshairCount;
+        long nanos;
+    }
+
+    // Queued after the last frame
+    private static final Frame END = new Frame();
+
+    private final File file;
+    private final int framesPerSecond;
+    private final Image crosshair;
+    private final int crosshairSize;
+    private final BlockingQueue<Frame> free = new ArrayBlockingQueue<>(QUEUE);
+    private final BlockingQueue<Frame> queued = new ArrayBlockingQueue<>(QUEUE + 1);
+    private final Thread encoder;
+    private final Thread shutdownHook;
+    private volatile boolean closed;
+    private volatile Consumer<Exception> failureListener = e -> {
+    };
+
+    private volatile long captured;
+    private volatile long dropped;
+    private volatile long written;
+    private volatile long repeated;
+    private final Histogram captureTimes = new Histogram();
+    private volatile long copiedPixels;
+    private volatile long bytes;
+
+    // Encoder thread, or the shutdown hook once it finished the file
+    private VideoWriter writer;
+    private BufferedImage canvas;
+    private long firstNanos;
+    private long lastSlot = -1;
+    private boolean finished;
+
+    public FrameRecorder(File file, int framesPerSecond, Image crosshair, int crosshairSize) {
+        this.file = file;
+        this.framesPerSecond = framesPerSecond;
+        this.crosshair = crosshair;
+        this.crosshairSize = crosshairSize;
+        for (int n = 0; n < QUEUE; n++) {
+            free.add(new Frame());
+        }
+        // Exiting mid-recording still leaves a playable file
+        shutdownHook = new Thread(this::finish, "recorder-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        encoder = new Thread(this::encode, "recorder");
+        encoder.setDaemon(true);
+        encoder.start();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Called on the encoder thread when writing the file failed, after the recording stopped.
+     */
+    public void setFailureListener(Consumer<Exception> failureListener) {
+        this.failureListener = failureListener;
+    }
+
+    /**
+     * Takes the frame the board is about to show. Render thread only, never blocks. Without a map,
+     * {@code background} must not change once passed; with one, {@code map} is read at
+     * ({@code mapX}, {@code mapY}) for the size of {@code effect} and {@code background} is ignored.
+     */
+    public void capture(BufferedImage effect, Rectangle drawn, BufferedImage background, MapTiles map, int mapX, int mapY,
+                        double zoom, double effectScale, int boardWidth, int boardHeight,
+                        int[] crosshairXs, int[] crosshairYs, int crosshairCount) {
+        if (closed) {
+            return;
+        }
+        long start = System.nanoTime();
+        Frame frame = free.poll();
+        if (frame == null) {
+            dropped++;
+            return;
+        }
+        frame.nanos = start;
+        int width = effect.getWidth();
+        if (frame.effect == null || frame.effect.getWidth() != width || frame.effect.getHeight() != effect.getHeight()) {
+            frame.effect = new BufferedImage(width, effect.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            frame.drawn.setBounds(0, 0, 0, 0);
+        }
+        int[] source = pixels(effect);
+        int[] target = pixels(frame.effect);
+        // Only the rows and columns blasts were drawn in this frame or the frame's last use
+        Rectangle old = frame.drawn;
+        copiedPixels += (long) old.width * old.height + (long) drawn.width * drawn.height;
+        for (int row = old.y; row < old.y + old.height; row++) {
+            Arrays.fill(target, row * width + old.x, row * width + old.x + old.width, 0);
+        }
+        for (int row = drawn.y; row < drawn.y + drawn.height; row++) {
+            System.arraycopy(source, row * width + drawn.x, target, row * width + drawn.x, drawn.width);
+        }
+        old.setBounds(drawn);
+        frame.background = map == null ? background : null;
+        frame.map = map;
+        frame.mapX = mapX;
+        frame.mapY = mapY;
+        frame.zoom = zoom;
+        frame.effectScale = effectScale;
+        frame.boardWidth = boardWidth;
+        frame.boardHeight = boardHeight;
+        if (frame.crosshairXs.length < crosshairCount) {
+            frame.crosshairXs = new int[crosshairCount];
+            frame.crosshairYs = new int[crosshairCount];
+        }
+        System.arraycopy(crosshairXs, 0, frame.crosshairXs, 0, crosshairCount);
+        System.arraycopy(crosshairYs, 0, frame.crosshairYs, 0, crosshairCount);
+        frame.crosshairCount = crosshairCount;
+        // Timed before the hand-off, which may switch to the encoder on a single core
+        captureTimes.record(System.nanoTime() - start);
+        queued.add(frame);
+        captured++;
+    }
+
+    /**
+     * Stops taking frames. The ones queued are still written, then the file is closed on the
+     * encoder thread.
+     */
+    public void close() {
+        if (!closed) {
+            closed = true;
+            queued.add(END);
+        }
+    }
+
+    /**
+     * Waits up to {@code timeout} for the encoder to write the frames queued before {@link #close}
+     * and close the file. Returns whether it did.
+     */
+    public boolean awaitFinished(long timeout, TimeUnit unit) throws InterruptedException {
+        encoder.join(Math.max(1, unit.toMillis(timeout)));
+        return !encoder.isAlive();
+    }
+
+    public long getCaptured() {
+        return captured;
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Time {@link #capture} spent copying a frame on the render thread at {@code quantile} (0..1) of
+     * the frames taken, in nanoseconds. Dropped frames are not counted.
+     */
+    public long getCaptureNanos(double quantile) {
+        return captureTimes.quantile(quantile);
+    }
+
+    /**
+     * Effect layer pixels {@link #capture} cleared and copied so far, what its time goes with.
+     */
+    public long getCopiedPixels() {
+        return copiedPixels;
+    }
+
+    @Override
+    public String toString() {
+        return "captured=" + captured + " dropped=" + dropped + " written=" + written + " repeated=" + repeated
+                + " capture p50=" + captureTimes.quantile(0.5) / 1000 + "us max=" + captureTimes.getMax() / 1000 + "us"
+                + " bytes=" + bytes;
+    }
+
+    private void encode() {
+        try {
+            for (Frame frame = queued.take(); frame != END; frame = queued.take()) {
+                try {
+                    write(frame);
+                } finally {
+                    free.add(frame);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finish();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already shutting down
+        }
+    }
+
+    private synchronized void write(Frame frame) {
+        if (finished) {
+            return;
+        }
+        try {
+            if (writer == null) {
+                // The first frame fixes the size, even for 4:2:0 chroma
+                int width = Math.max(2, frame.boardWidth & ~1);
+                int height = Math.max(2, frame.boardHeight & ~1);
+                canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                writer = VideoWriter.open(file, width, height, framesPerSecond);
+                firstNanos = frame.nanos;
+            }
+            long period = TimeUnit.SECONDS.toNanos(1) / framesPerSecond;
+            long slot = (frame.nanos - firstNanos + period / 2) / period;
+            if (slot <= lastSlot) {
+                // Two frames in one period, the video keeps the first
+                return;
+            }
+            for (long n = lastSlot + 1; n < slot && lastSlot >= 0; n++) {
+                writer.repeatFrame();
+                repeated++;
+            }
+            lastSlot = slot;
+            compose(canvas, frame);
+            writer.writeFrame(canvas);
+            written++;
+            bytes = writer.getBytes();
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Closes the file once, from the encoder when it is done or failed, or from the shutdown hook.
+     */
+    private synchronized void finish() {
+        closed = true;
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+            bytes = writer.getBytes();
+        } catch (IOException e) {
+            System.err.println("Recording " + file + " failed: " + e);
+            failureListener.accept(e);
+        }
+    }
+
+    private void fail(Exception e) {
+        System.err.println("Recording " + file + " failed: " + e);
+        finish();
+        failureListener.accept(e);
+    }
+
+    private void compose(BufferedImage canvas, Frame frame) {
+        Graphics2D g = canvas.createGraphics();
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        AffineTransform board = g.getTransform();
+        if (frame.zoom != 1) {
+            g.scale(frame.zoom, frame.zoom);
+        }
+        g.drawImage(frame.map != null ? mapBackground(frame) : frame.background, 0, 0, null);
+        for (int n = 0; n < frame.crosshairCount; n++) {
+            g.drawImage(crosshair, frame.crosshairXs[n] - crosshairSize / 2, frame.crosshairYs[n] - crosshairSize / 2, null);
+        }
+        if (frame.effectScale == 1) {
+            g.drawImage(frame.effect, 0, 0, null);
+        } else {
+            // Rendered at another scale than the board, stretched like the board does
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(frame.effect, 0, 0, (int) Math.round(frame.effect.getWidth() / frame.effectScale),
+                    (int) Math.round(frame.effect.getHeight() / frame.effectScale), null);
+        }
+        g.setTransform(board);
+        g.dispose();
+    }
+
+    /**
+     * The map under {@code frame}, copied from the tiles into the frame's own image. A map closed
+     * meanwhile comes out black.
+     */
+    private static BufferedImage mapBackground(Frame frame) {
+        int width = frame.effect.getWidth();
+        int height = frame.effect.getHeight();
+        if (frame.mapBackground == null || frame.mapBackground.getWidth() != width || frame.mapBackground.getHeight() != height) {
+            frame.mapBackground = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        int[] pixels = pixels(frame.mapBackground);
+        try {
+            frame.map.copy(frame.mapX, frame.mapY, width, height, pixels, 0, width);
+        } catch (IOException e) {
+            Arrays.fill(pixels, 0);
+        }
+        return frame.mapBackground;
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+}
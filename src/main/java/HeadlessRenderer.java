@@ -0,0 +1,302 @@
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.*;
+
+/**
+ * Renders a scripted sequence of explosions to disk or stdout without a window.
+ * <p>
+ * Frames are rendered back to back, as fast as the CPU allows. One frame stands for one sixtieth
+ * of a second of the interactive simulation, which steps the blasts {@code (1 + propagationSpeed) / 2}
+ * times per frame. The sequence is simulated by a {@link Timeline}, so any frame range renders
+ * the same pixels as a full run, and PNG output is split into ranges rendered in parallel.
+ */
+public class HeadlessRenderer {
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java SwingExplosion --headless [options]",
+            "  --background FILE         background image (default: bundled background.png)",
+            "  --script FILE             blast events, one 'x y startFrame' per line",
+            "  --out DIR|-               PNG sequence directory, or - for raw RGBA frames on stdout",
+            "  --frames N                number of frames (default: until the last blast burns out)",
+            "  --from N                  first frame to write (default: 0)",
+            "  --keyframe-interval N     ticks between saved simulation states (default: 64)",
+            "  --size WxH                board size (default: background size)",
+            "  --max-iter N              (default: 200)",
+            "  --blast-increment D       (default: 0.6)",
+            "  --fog-height D            (default: 1.0)",
+            "  --propagation-speed D     (default: 1.0)",
+            "  --seed N                  gas noise seed (default: 48)",
+            "  --threads N               workers rendering frame ranges, PNG output only (default: cores)",
+            "  --lod N                   detail of large blasts, 0 full to 3 quarter resolution (default: 0)");
+
+    private BufferedImage background;
+    private File script;
+    private String out;
+    private int frames = -1;
+    private int from = 0;
+    private int keyframeInterval = Timeline.DEFAULT_KEYFRAME_INTERVAL;
+    private int width = -1;
+    private int height = -1;
+    private int max_iter = 200;
+    private double blast_increment = 0.6;
+    private double fogHeight = 1.0;
+    private double propagationSpeed = 1.0;
+    private long seed = 48;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int lod = LevelOfDetail.FULL;
+
+    private int[] blastX = new int[0];
+    private int[] blastY = new int[0];
+    private int[] blastStart = new int[0];
+
+    public static void main(String[] args) {
+        HeadlessRenderer renderer = new HeadlessRenderer();
+        try {
+            renderer.parse(args);
+            renderer.render();
+        } catch (IllegalArgumentException iae) {
+            System.err.println(iae.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException io) {
+            System.err.println("Rendering failed: " + io.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private void parse(String[] args) throws IOException {
+        for (int n = 0; n < args.length; n++) {
+            String arg = args[n];
+            if (arg.equals("--headless")) continue;
+            if (arg.equals("--help")) {
+                System.err.println(USAGE);
+                System.exit(0);
+            }
+            if (n + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++n];
+            try {
+                switch (arg) {
+                    case "--background":
+                        BufferedImage image = ImageIO.read(new File(value));
+                        if (image == null) {
+                            throw new IllegalArgumentException("Not an image: " + value);
+                        }
+                        background = BackgroundCache.toIntArgb(image);
+                        break;
+                    case "--script":
+                        script = new File(value);
+                        break;
+                    case "--out":
+                        out = value;
+                        break;
+                    case "--frames":
+                        frames = Integer.parseInt(value);
+                        break;
+                    case "--size":
+                        String[] wh = value.toLowerCase(Locale.ROOT).split("x");
+                        width = Integer.parseInt(wh[0]);
+                        height = Integer.parseInt(wh[1]);
+                        break;
+                    case "--max-iter":
+                        max_iter = Integer.parseInt(value);
+                        break;
+                    case "--blast-increment":
+                        blast_increment = Double.parseDouble(value);
+                        break;
+                    case "--fog-height":
+                        fogHeight = Double.parseDouble(value);
+                        break;
+                    case "--propagation-speed":
+                        propagationSpeed = Double.parseDouble(value);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "--from":
+                        from = Integer.parseInt(value);
+                        break;
+                    case "--keyframe-interval":
+                        keyframeInterval = Integer.parseInt(value);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--lod":
+                        lod = Integer.parseInt(value);
+                        if (lod < LevelOfDetail.FULL || lod > LevelOfDetail.QUARTER) {
+                            throw new NumberFormatException();
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Bad value for " + arg + ": " + value);
+            }
+        }
+        if (script == null || out == null) {
+            throw new IllegalArgumentException("--script and --out are required");
+        }
+        if (background == null) {
+            background = BackgroundCache.toIntArgb(ImageIO.read(HeadlessRenderer.class.getResource("background.png")));
+        }
+        if (width < 0) {
+            width = background.getWidth();
+            height = background.getHeight();
+        }
+        readScript();
+    }
+
+    private void readScript() throws IOException {
+        int count = 0;
+        for (String line : Files.readAllLines(script.toPath(), StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            String[] fields = line.split("[\\s,]+");
+            if (fields.length != 3) {
+                throw new IllegalArgumentException("Expected 'x y startFrame' in script line: " + line);
+            }
+            if (count == blastX.length) {
+                blastX = Arrays.copyOf(blastX, count * 2 + 16);
+                blastY = Arrays.copyOf(blastY, count * 2 + 16);
+                blastStart = Arrays.copyOf(blastStart, count * 2 + 16);
+            }
+            try {
+                blastX[count] = Integer.parseInt(fields[0]);
+                blastY[count] = Integer.parseInt(fields[1]);
+                blastStart[count] = Integer.parseInt(fields[2]);
+            } catch (NumberFormatException nfe) {
+                throw new IllegalArgumentException("Expected 'x y startFrame' in script line: " + line);
+            }
+            count++;
+        }
+        blastX = Arrays.copyOf(blastX, count);
+        blastY = Arrays.copyOf(blastY, count);
+        blastStart = Arrays.copyOf(blastStart, count);
+    }
+
+    private void render() throws IOException {
+        int R = 0;
+        double max_R = (R + max_iter * blast_increment);
+        double ticksPerFrame = (1 + propagationSpeed) / 2;
+        if (frames < 0) {
+            int lastStart = 0;
+            for (int start : blastStart) {
+                lastStart = Math.max(lastStart, start);
+            }
+            frames = lastStart + (int) Math.ceil((max_iter + 2) / ticksPerFrame) + 1;
+        }
+        long[] spawnTicks = new long[blastStart.length];
+        for (int k = 0; k < blastStart.length; k++) {
+            spawnTicks[k] = tickOf(blastStart[k], ticksPerFrame);
+        }
+
+        BufferedImage boomImage = Compositor.sprite(HeadlessRenderer.class.getResource("cotton.png"), 80);
+        BufferedImage crosshairImage = Compositor.sprite(HeadlessRenderer.class.getResource("crosshair.png"), 50);
+
+        OutputStream raw = out.equals("-") ? new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 20) : null;
+        File dir = raw == null ? new File(out) : null;
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        // Raw frames go to one stream in order
+        int workers = raw != null ? 1 : Math.max(1, Math.min(threads, frames - from));
+        ConcurrentSkipListMap<Long, Timeline.Keyframe> keyframes = new ConcurrentSkipListMap<>();
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Void>> ranges = new ArrayList<>();
+            int perWorker = (frames - from + workers - 1) / workers;
+            for (int first = from; first < frames; first += perWorker) {
+                int rangeStart = first;
+                int rangeEnd = Math.min(first + perWorker, frames);
+                ranges.add(pool.submit(() -> {
+                    Timeline timeline = new Timeline(blastX, blastY, spawnTicks, R, seed, width, height, background,
+                            max_R, blast_increment, fogHeight, keyframeInterval, keyframes);
+                    timeline.getRenderer().setLevelOfDetail(lod);
+                    try {
+                        renderRange(timeline, rangeStart, rangeEnd, ticksPerFrame, boomImage, crosshairImage, raw, dir);
+                    } finally {
+                        timeline.getRenderer().release();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> range : ranges) {
+                range.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        if (raw != null) {
+            raw.flush();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.err.printf(Locale.ROOT, "Rendered %d frames of %dx%d in %.2f s (%.1f fps) on %d workers, %d keyframes%n",
+                frames - from, width, height, elapsed / 1e9, (frames - from) / (elapsed / 1e9), workers, keyframes.size());
+    }
+
+    private void renderRange(Timeline timeline, int first, int end, double ticksPerFrame,
+                             BufferedImage boomImage, BufferedImage crosshairImage, OutputStream raw, File dir) throws IOException {
+        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] framePixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+        byte[] rgba = raw != null ? new byte[width * height * 4] : null;
+
+        for (int f = first; f < end; f++) {
+            BufferedImage effect = timeline.render(tickOf(f, ticksPerFrame), boomImage);
+
+            Graphics g = frame.getGraphics();
+            g.setColor(Color.BLACK);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(background, 0, 0, null);
+            for (int k = 0; k < timeline.getActiveCount(); k++) {
+                if ((int) timeline.getActiveR(k) <= 0) {
+                    g.drawImage(crosshairImage, timeline.getActiveX(k) - crosshairImage.getWidth() / 2, timeline.getActiveY(k) - crosshairImage.getHeight() / 2, null);
+                }
+            }
+            g.drawImage(effect, 0, 0, null);
+            g.dispose();
+
+            if (raw != null) {
+                for (int p = 0, b = 0; p < framePixels.length; p++) {
+                    int argb = framePixels[p];
+                    rgba[b++] = (byte) (argb >> 16);
+                    rgba[b++] = (byte) (argb >> 8);
+                    rgba[b++] = (byte) argb;
+                    rgba[b++] = (byte) (argb >> 24);
+                }
+                raw.write(rgba);
+            } else {
+                ImageIO.write(frame, "png", new File(dir, String.format("frame_%05d.png", f)));
+            }
+        }
+    }
+
+    /**
+     * Ticks the interactive simulation has run before it shows frame {@code frame}.
+     */
+    private static long tickOf(int frame, double ticksPerFrame) {
+        return (long) Math.floor(frame * ticksPerFrame);
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Picks how much detail large blasts are rendered with, from how long the last frames took.
+ * <p>
+ * A frame over the budget drops one level right away. Climbing back up takes {@link #CALM_FRAMES}
+ * frames in a row under {@link #HEADROOM} of the budget, so a level that only just fits does not
+ * flip back and forth.
+ */
+public class LevelOfDetail {
+    /** Every pixel, blurred shockwave. */
+    public static final int FULL = 0;
+    /** Every pixel, the shockwave skips the 3x3 blur of its previous color. */
+    public static final int NO_BLUR = 1;
+    /** One pixel shaded per 2x2 block and copied to the rest. */
+    public static final int HALF = 2;
+    /** One pixel shaded per 4x4 block. */
+    public static final int QUARTER = 3;
+
+    /** Blasts smaller than this always render at {@link #FULL}, they are cheap and the loss would show. */
+    public static final int MIN_RADIUS = 24;
+
+    static final int CALM_FRAMES = 30;
+    static final double HEADROOM = 0.5;
+
+    private static final String[] NAMES = {"full", "no blur", "half", "quarter"};
+
+    private volatile long budgetNanos;
+    private final boolean adaptive;
+    private volatile int level;
+    private int calmFrames;
+
+    /**
+     * Adapts to a frame budget of {@code budgetNanos}.
+     */
+    public LevelOfDetail(long budgetNanos) {
+        this.budgetNanos = budgetNanos;
+        this.adaptive = true;
+    }
+
+    /**
+     * Stays at {@code level} whatever the frames take.
+     */
+    public static LevelOfDetail fixed(int level) {
+        return new LevelOfDetail(level);
+    }
+
+    private LevelOfDetail(int level) {
+        this.adaptive = false;
+        this.level = Math.max(FULL, Math.min(QUARTER, level));
+    }
+
+    public void setBudgetNanos(long budgetNanos) {
+        this.budgetNanos = budgetNanos;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Takes the time the last frame took and returns the level for the next one.
+     */
+    public int update(long frameNanos) {
+        if (!adaptive) {
+            return level;
+        }
+        long budget = budgetNanos;
+        if (frameNanos > budget) {
+            calmFrames = 0;
+            if (level < QUARTER) {
+                level++;
+            }
+        } else if (frameNanos < budget * HEADROOM && level > FULL) {
+            if (++calmFrames >= CALM_FRAMES) {
+                calmFrames = 0;
+                level--;
+            }
+        } else {
+            calmFrames = 0;
+        }
+        return level;
+    }
+
+    /**
+     * Side of the pixel blocks a blast of radius {@code r} is shaded in at {@code level}.
+     */
+    static int step(int level, int r) {
+        return r < MIN_RADIUS || level < HALF ? 1 : 1 << (level - 1);
+    }
+
+    static boolean blur(int level, int r) {
+        return r < MIN_RADIUS || level == FULL;
+    }
+
+    public static String name(int level) {
+        return NAMES[level];
+    }
+}
@@ -0,0 +1,269 @@
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A map too large for the heap, kept as a file of square ARGB tiles that are memory-mapped one at a
+ * time when a pixel of them is needed.
+ * <p>
+ * {@link #convert} writes the file once from an image, decoding it a strip of tile rows at a time.
+ * The file holds a small header and then every tile, row by row, each padded to the full tile size
+ * with opaque black. At most {@link #MAX_MAPPED_TILES} tiles stay mapped, the least recently used
+ * ones are dropped first.
+ */
+public class MapTiles implements Closeable {
+    public static final int DEFAULT_TILE_SIZE = 256;
+    public static final String EXTENSION = ".tiles";
+
+    // -Dexplosion.mapTiles=N keeps up to N tiles mapped at once
+    static final int MAX_MAPPED_TILES = Integer.getInteger("explosion.mapTiles", 64);
+
+    private static final int MAGIC = 0x4D415054; // "MAPT"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int OUTSIDE = 0xFF000000;
+    // Decoded strips are kept under this many pixels
+    private static final int STRIP_PIXELS = 16 << 20;
+
+    private final FileChannel channel;
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final int tilesX;
+    private final int tilesY;
+
+    private final LinkedHashMap<Integer, IntBuffer> mapped = new LinkedHashMap<Integer, IntBuffer>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, IntBuffer> eldest) {
+            return size() > MAX_MAPPED_TILES;
+        }
+    };
+    private long pageIns;
+
+    private MapTiles(FileChannel channel, int width, int height, int tileSize) {
+        this.channel = channel;
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.tilesX = (width + tileSize - 1) / tileSize;
+        this.tilesY = (height + tileSize - 1) / tileSize;
+    }
+
+    /**
+     * Opens a tile file written by {@link #convert}.
+     */
+    public static MapTiles open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    break;
+                }
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException(file + " is not a map tile file");
+            }
+            int width = header.getInt();
+            int height = header.getInt();
+            int tileSize = header.getInt();
+            MapTiles tiles = new MapTiles(channel, width, height, tileSize);
+            if (channel.size() < tiles.offset(tiles.tilesX * tiles.tilesY)) {
+                throw new IOException(file + " is truncated");
+            }
+            return tiles;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens {@code file} as tiles: a tile file directly, an image through the tile file next to it,
+     * which is written first unless it is newer than the image.
+     */
+    public static MapTiles openOrConvert(File file) throws IOException {
+        if (file.getName().endsWith(EXTENSION)) {
+            return open(file);
+        }
+        File tiles = new File(file.getPath() + EXTENSION);
+        if (!tiles.isFile() || tiles.lastModified() < file.lastModified()) {
+            convert(file, tiles, DEFAULT_TILE_SIZE);
+        }
+        return open(tiles);
+    }
+
+    /**
+     * Writes the tile file of {@code source} to {@code target}. Only a strip of tile rows of the
+     * image is decoded at a time.
+     */
+    public static void convert(File source, File target, int tileSize) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source)) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("No reader for " + source);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                convert(reader, target, tileSize);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static void convert(ImageReader reader, File target, int tileSize) throws IOException {
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        int tilesX = (width + tileSize - 1) / tileSize;
+        int tilesY = (height + tileSize - 1) / tileSize;
+        int rowsPerStrip = Math.max(1, STRIP_PIXELS / (width * tileSize)) * tileSize;
+
+        File partial = new File(target.getPath() + ".part");
+        try (FileChannel out = FileChannel.open(partial.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(tileSize);
+            header.rewind();
+            writeFully(out, header, 0);
+
+            ByteBuffer tile = ByteBuffer.allocate(tileSize * tileSize * 4).order(ByteOrder.LITTLE_ENDIAN);
+            IntBuffer tileInts = tile.asIntBuffer();
+            int[] strip = new int[width * rowsPerStrip];
+            ImageReadParam param = reader.getDefaultReadParam();
+            for (int y0 = 0; y0 < height; y0 += rowsPerStrip) {
+                int rows = Math.min(rowsPerStrip, height - y0);
+                param.setSourceRegion(new Rectangle(0, y0, width, rows));
+                BufferedImage decoded = reader.read(0, param);
+                decoded.getRGB(0, 0, width, rows, strip, 0, width);
+
+                for (int ty = y0 / tileSize; ty * tileSize < y0 + rows; ty++) {
+                    for (int tx = 0; tx < tilesX; tx++) {
+                        tileInts.clear();
+                        for (int row = 0; row < tileSize; row++) {
+                            int y = ty * tileSize + row - y0;
+                            for (int col = 0; col < tileSize; col++) {
+                                int x = tx * tileSize + col;
+                                tileInts.put(y < rows && x < width ? strip[y * width + x] : OUTSIDE);
+                            }
+                        }
+                        tile.clear();
+                        writeFully(out, tile, HEADER_BYTES + (long) (ty * tilesX + tx) * tile.capacity());
+                    }
+                }
+            }
+        }
+        if (!partial.renameTo(target)) {
+            target.delete();
+            if (!partial.renameTo(target)) {
+                throw new IOException("Cannot replace " + target);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += out.write(buffer, position);
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Copies the {@code w} x {@code h} pixels at ({@code x}, {@code y}) of the map into {@code dst}
+     * from {@code offset} on, {@code stride} ints per row. Only the tiles the region covers are mapped,
+     * pixels off the map come out opaque black.
+     */
+    public synchronized void copy(int x, int y, int w, int h, int[] dst, int offset, int stride) throws IOException {
+        for (int row = 0; row < h; row++) {
+            int my = y + row;
+            int d = offset + row * stride;
+            if (my < 0 || my >= height) {
+                Arrays.fill(dst, d, d + w, OUTSIDE);
+                continue;
+            }
+            int col = 0;
+            while (col < w) {
+                int mx = x + col;
+                if (mx < 0 || mx >= width) {
+                    // Up to the map edge, or the rest of the row
+                    int run = mx < 0 ? Math.min(-mx, w - col) : w - col;
+                    Arrays.fill(dst, d + col, d + col + run, OUTSIDE);
+                    col += run;
+                    continue;
+                }
+                int tx = mx / tileSize;
+                int inTile = mx - tx * tileSize;
+                int run = Math.min(Math.min(tileSize - inTile, width - mx), w - col);
+                IntBuffer tile = tile(tx, my / tileSize);
+                tile.get((my % tileSize) * tileSize + inTile, dst, d + col, run);
+                col += run;
+            }
+        }
+    }
+
+    /**
+     * Tiles mapped since the file was opened, counting ones mapped again after being dropped.
+     */
+    public synchronized long getPageIns() {
+        return pageIns;
+    }
+
+    public synchronized int getMappedTiles() {
+        return mapped.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mapped.clear();
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return width + "x" + height + " in " + tilesX + "x" + tilesY + " tiles of " + tileSize + ", " + getMappedTiles() + " mapped";
+    }
+
+    private IntBuffer tile(int tx, int ty) throws IOException {
+        int index = ty * tilesX + tx;
+        IntBuffer tile = mapped.get(index);
+        if (tile == null) {
+            tile = channel.map(FileChannel.MapMode.READ_ONLY, offset(index), (long) tileSize * tileSize * 4)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            mapped.put(index, tile);
+            pageIns++;
+        }
+        return tile;
+    }
+
+    private long offset(int index) {
+        return HEADER_BYTES + (long) index * tileSize * tileSize * 4;
+    }
+}
@@ -0,0 +1,129 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * The part of a {@link MapTiles} map the board shows, panned in map pixels and zoomed by a factor.
+ * <p>
+ * Blasts live in map coordinates. A frame is rendered at map resolution over the visible part of
+ * the map, the layer, which is the board size divided by the zoom, and drawn scaled onto the board.
+ * The background of the layer is copied out of the mapped tiles only when the view moved, into one
+ * of two images that take turns, so whoever caches the previous one sees a new image.
+ * <p>
+ * Moves come from the event thread and frames from the render thread, every method locks the viewport.
+ */
+public class MapViewport {
+    public static final double MIN_ZOOM = 0.5;
+    public static final double MAX_ZOOM = 4;
+
+    private final MapTiles tiles;
+    private int boardWidth = 1;
+    private int boardHeight = 1;
+    private double zoom = 1;
+    private int originX;
+    private int originY;
+
+    private final BufferedImage[] backgrounds = new BufferedImage[2];
+    private int current;
+    private boolean moved = true;
+
+    public MapViewport(MapTiles tiles) {
+        this.tiles = tiles;
+    }
+
+    public MapTiles getTiles() {
+        return tiles;
+    }
+
+    public synchronized void setBoardSize(int width, int height) {
+        if (width != boardWidth || height != boardHeight) {
+            boardWidth = Math.max(1, width);
+            boardHeight = Math.max(1, height);
+            clamp();
+        }
+    }
+
+    /**
+     * Moves the view by ({@code dx}, {@code dy}) board pixels.
+     */
+    public synchronized void pan(int dx, int dy) {
+        originX += (int) Math.round(dx / zoom);
+        originY += (int) Math.round(dy / zoom);
+        clamp();
+    }
+
+    /**
+     * Multiplies the zoom by {@code factor}, keeping the map pixel under board pixel ({@code bx}, {@code by}) in place.
+     */
+    public synchronized void zoomAt(double factor, int bx, int by) {
+        double newZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+        double mx = originX + bx / zoom;
+        double my = originY + by / zoom;
+        zoom = newZoom;
+        originX = (int) Math.round(mx - bx / zoom);
+        originY = (int) Math.round(my - by / zoom);
+        clamp();
+    }
+
+    public synchronized double getZoom() {
+        return zoom;
+    }
+
+    public synchronized int getOriginX() {
+        return originX;
+    }
+
+    public synchronized int getOriginY() {
+        return originY;
+    }
+
+    /**
+     * Width of the layer frames are rendered in, in map pixels.
+     */
+    public synchronized int getLayerWidth() {
+        return (int) Math.ceil(boardWidth / zoom);
+    }
+
+    public synchronized int getLayerHeight() {
+        return (int) Math.ceil(boardHeight / zoom);
+    }
+
+    public synchronized int toMapX(int bx) {
+        return originX + (int) (bx / zoom);
+    }
+
+    public synchronized int toMapY(int by) {
+        return originY + (int) (by / zoom);
+    }
+
+    /**
+     * The map under the layer, copied from the tiles if the view moved since the last call.
+     */
+    public synchronized BufferedImage background() {
+        if (moved) {
+            int width = getLayerWidth();
+            int height = getLayerHeight();
+            current ^= 1;
+            BufferedImage image = backgrounds[current];
+            if (image == null || image.getWidth() != width || image.getHeight() != height) {
+                image = backgrounds[current] = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            }
+            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            try {
+                tiles.copy(originX, originY, width, height, pixels, 0, width);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            moved = false;
+        }
+        return backgrounds[current];
+    }
+
+    private void clamp() {
+        // The layer stays on the map unless the map is smaller than it
+        originX = Math.max(0, Math.min(originX, tiles.getWidth() - getLayerWidth()));
+        originY = Math.max(0, Math.min(originY, tiles.getHeight() - getLayerHeight()));
+        moved = true;
+    }
+}
@@ -0,0 +1,229 @@
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes Motion-JPEG in a plain AVI: every frame a JPEG of its own, indexed at the end, which
+ * every common player and editor reads.
+ * <p>
+ * A repeated frame is an empty chunk, which players show as the previous frame, so idle stretches
+ * cost a few bytes. The sizes in the headers are only known at the end and are filled in by
+ * {@link #close}. A plain AVI cannot grow past 1 GiB reliably, so a long recording goes on in
+ * {@code name.1.avi}, {@code name.2.avi} and so on.
+ */
+public class MjpegAviWriter implements VideoWriter {
+    // -Dexplosion.recordQuality=Q JPEG quality from 0 to 1
+    private static final float QUALITY = Float.parseFloat(System.getProperty("explosion.recordQuality", "0.8"));
+    private static final long SEGMENT_BYTES = 1L << 30;
+
+    private static final int AVIF_HASINDEX = 0x10;
+    private static final int AVIIF_KEYFRAME = 0x10;
+    // Offsets into the headers written by startSegment
+    private static final int RIFF_SIZE = 4;
+    private static final int AVIH_MAX_BYTES_PER_SEC = 36;
+    private static final int AVIH_TOTAL_FRAMES = 48;
+    private static final int AVIH_BUFFER_SIZE = 60;
+    private static final int STRH_LENGTH = 140;
+    private static final int STRH_BUFFER_SIZE = 144;
+    private static final int MOVI_SIZE = 216;
+    private static final int MOVI = 220;
+    private static final int HEADER_BYTES = 224;
+
+    private final File file;
+    private final int width;
+    private final int height;
+    private final int framesPerSecond;
+    private final ImageWriter jpeg;
+    private final ImageWriteParam param;
+    private final Chunk chunk = new Chunk();
+    private final ByteBuffer small = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+
+    private FileChannel out;
+    private int segment;
+    private long position;
+    private long bytes;
+    private int frames;
+    private int maxChunk;
+    // Offset from 'movi' and size of every chunk of the segment, for the index
+    private int[] index = new int[1024];
+
+    public MjpegAviWriter(File file, int width, int height, int framesPerSecond) throws IOException {
+        this.file = file;
+        this.width = width;
+        this.height = height;
+        this.framesPerSecond = framesPerSecond;
+        jpeg = ImageIO.getImageWritersByFormatName("jpeg").next();
+        param = jpeg.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(QUALITY);
+        startSegment();
+    }
+
+    @Override
+    public void writeFrame(BufferedImage frame) throws IOException {
+        chunk.reset();
+        try (MemoryCacheImageOutputStream stream = new MemoryCacheImageOutputStream(chunk)) {
+            jpeg.setOutput(stream);
+            jpeg.write(null, new IIOImage(frame, null, null), param);
+        }
+        writeChunk(chunk.data(), chunk.size());
+    }
+
+    @Override
+    public void repeatFrame() throws IOException {
+        writeChunk(null, 0);
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finishSegment();
+        } finally {
+            jpeg.dispose();
+        }
+    }
+
+    private void writeChunk(byte[] data, int size) throws IOException {
+        if (position + size + 8 + (frames + 1) * 16L > SEGMENT_BYTES) {
+            finishSegment();
+            segment++;
+            startSegment();
+        }
+        if (frames * 2 == index.length) {
+            index = Arrays.copyOf(index, index.length * 2);
+        }
+        index[frames * 2] = (int) (position - MOVI);
+        index[frames * 2 + 1] = size;
+        small.clear();
+        small.put(new byte[]{'0', '0', 'd', 'c'}).putInt(size).flip();
+        write(small);
+        if (size > 0) {
+            write(ByteBuffer.wrap(data, 0, size));
+            if ((size & 1) != 0) {
+                small.clear();
+                small.put((byte) 0).flip();
+                write(small);
+            }
+        }
+        frames++;
+        maxChunk = Math.max(maxChunk, size);
+    }
+
+    private void startSegment() throws IOException {
+        File target = segment == 0 ? file : segmentFile(segment);
+        out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        frames = 0;
+        maxChunk = 0;
+        position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        fourcc(header, "RIFF").putInt(0);
+        fourcc(header, "AVI ");
+        fourcc(header, "LIST").putInt(192);
+        fourcc(header, "hdrl");
+        fourcc(header, "avih").putInt(56);
+        header.putInt(1_000_000 / framesPerSecond).putInt(0).putInt(0).putInt(AVIF_HASINDEX)
+                .putInt(0).putInt(0).putInt(1).putInt(0).putInt(width).putInt(height)
+                .putInt(0).putInt(0).putInt(0).putInt(0);
+        fourcc(header, "LIST").putInt(116);
+        fourcc(header, "strl");
+        fourcc(header, "strh").putInt(56);
+        fourcc(header, "vids");
+        fourcc(header, "MJPG");
+        header.putInt(0).putShort((short) 0).putShort((short) 0).putInt(0)
+                .putInt(1).putInt(framesPerSecond).putInt(0).putInt(0).putInt(0).putInt(-1).putInt(0)
+                .putShort((short) 0).putShort((short) 0).putShort((short) width).putShort((short) height);
+        fourcc(header, "strf").putInt(40);
+        header.putInt(40).putInt(width).putInt(height).putShort((short) 1).putShort((short) 24);
+        fourcc(header, "MJPG");
+        header.putInt(width * height * 3).putInt(0).putInt(0).putInt(0).putInt(0);
+        fourcc(header, "LIST").putInt(0);
+        fourcc(header, "movi");
+        header.flip();
+        write(header);
+    }
+
+    private void finishSegment() throws IOException {
+        try {
+            ByteBuffer idx = ByteBuffer.allocate(8 + frames * 16).order(ByteOrder.LITTLE_ENDIAN);
+            fourcc(idx, "idx1").putInt(frames * 16);
+            for (int n = 0; n < frames; n++) {
+                int size = index[n * 2 + 1];
+                fourcc(idx, "00dc").putInt(size > 0 ? AVIIF_KEYFRAME : 0).putInt(index[n * 2]).putInt(size);
+            }
+            idx.flip();
+            long moviEnd = position;
+            write(idx);
+
+            patch(RIFF_SIZE, (int) (position - 8));
+            patch(AVIH_MAX_BYTES_PER_SEC, maxChunk * framesPerSecond);
+            patch(AVIH_TOTAL_FRAMES, frames);
+            patch(AVIH_BUFFER_SIZE, maxChunk + 8);
+            patch(STRH_LENGTH, frames);
+            patch(STRH_BUFFER_SIZE, maxChunk + 8);
+            patch(MOVI_SIZE, (int) (moviEnd - MOVI));
+        } finally {
+            out.close();
+        }
+    }
+
+    private File segmentFile(int segment) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        String segmentName = dot < 0 ? name + "." + segment : name.substring(0, dot) + "." + segment + name.substring(dot);
+        return new File(file.getParentFile(), segmentName);
+    }
+
+    private void patch(long offset, int value) throws IOException {
+        small.clear();
+        small.putInt(value).flip();
+        while (small.hasRemaining()) {
+            offset += out.write(small, offset);
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        position += length;
+        bytes += length;
+    }
+
+    private static ByteBuffer fourcc(ByteBuffer buffer, String code) {
+        for (int n = 0; n < 4; n++) {
+            buffer.put((byte) code.charAt(n));
+        }
+        return buffer;
+    }
+
+    /**
+     * Byte sink for one encoded frame, reused from frame to frame.
+     */
+    private static final class Chunk extends ByteArrayOutputStream {
+        Chunk() {
+            super(1 << 18);
+        }
+
+        byte[] data() {
+            return buf;
+        }
+    }
+}
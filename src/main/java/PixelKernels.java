@@ -0,0 +1,129 @@
+/**
+ * Allocation-free versions of the renderer's color kernels that give the same pixels.
+ * <p>
+ * The blur weights are 1/16, 1/8 and 1/4, so the blur sums exactly in integers. It processes red
+ * with blue and alpha with green two at a time, in the 16-bit halves of an int. The blend factors
+ * of {@link #mergeColors} only depend on the two alphas, so they are looked up instead of divided.
+ * {@link #alphaLut} turns a constant alpha percentage into a table lookup.
+ * <p>
+ * {@link #rows()} gives the whole-row variants, vectorized when {@code jdk.incubator.vector} is available.
+ */
+public final class PixelKernels {
+    static final int RED_BLUE = 0x00FF00FF;
+
+    /** Blend factors of the background and foreground color, indexed by {@code backgroundAlpha << 8 | foregroundAlpha}. */
+    private static final float[] MERGE_BACKGROUND = new float[256 * 256];
+    private static final float[] MERGE_FOREGROUND = new float[256 * 256];
+
+    static {
+        for (int ab = 0; ab < 256; ab++) {
+            for (int af = 0; af < 256; af++) {
+                if (ab == 0 && af == 0) continue;
+                // Same float expressions as ExplosionRenderer.mergeColors, so the products round the same way
+                float fab = ab / 255f;
+                float faf = af / 255f;
+                float ap = fab + faf;
+                MERGE_BACKGROUND[ab << 8 | af] = fab / ap;
+                MERGE_FOREGROUND[ab << 8 | af] = faf / ap;
+            }
+        }
+    }
+
+    private static final RowKernels ROWS = loadRows();
+
+    private PixelKernels() {
+    }
+
+    /**
+     * Row kernels of this JVM, the vector ones if the incubator module was added.
+     */
+    public static RowKernels rows() {
+        return ROWS;
+    }
+
+    private static RowKernels loadRows() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent() && !Boolean.getBoolean("explosion.scalarKernels")) {
+            try {
+                return (RowKernels) Class.forName("VectorRowKernels").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // fall through to the scalar kernels
+            }
+        }
+        return new ScalarRowKernels();
+    }
+
+    public static int mergeColors(int backgroundColor, int foregroundColor) {
+        int index = (backgroundColor >>> 16 & 0xFF00) | (foregroundColor >>> 24);
+        float factorb = MERGE_BACKGROUND[index];
+        float factorf = MERGE_FOREGROUND[index];
+
+        int a = (int) ((backgroundColor >>> 24) * factorb + (foregroundColor >>> 24) * factorf);
+        int r = (int) (((backgroundColor >> 16) & 255) * factorb + ((foregroundColor >> 16) & 255) * factorf);
+        int g = (int) (((backgroundColor >> 8) & 255) * factorb + ((foregroundColor >> 8) & 255) * factorf);
+        int b = (int) ((backgroundColor & 255) * factorb + (foregroundColor & 255) * factorf);
+        return (a & 0xFF) << 24 | (r & 0xFF) << 16 | (g & 0xFF) << 8 | (b & 0xFF);
+    }
+
+    /**
+     * Per channel floor of the mean of two colors.
+     */
+    public static int avg2(int argb1, int argb2) {
+        return (argb1 & argb2) + (((argb1 ^ argb2) & 0xFEFEFEFE) >>> 1);
+    }
+
+    /**
+     * 3x3 Gaussian blur of the pixel at ({@code i}, {@code j}). Like the original, the first row and
+     * column of the image count as transparent.
+     */
+    public static int gauss(int i, int j, int[] pixels, int w, int h) {
+        int rb = 0;
+        int ag = 0;
+        for (int y = j - 1; y <= j + 1; y++) {
+            if (y <= 0 || y >= h) continue;
+            int weight = y == j ? 2 : 1;
+            int row = y * w;
+            for (int x = i - 1; x <= i + 1; x++) {
+                if (x <= 0 || x >= w) continue;
+                int argb = pixels[row + x];
+                int k = x == i ? weight << 1 : weight;
+                rb += k * (argb & RED_BLUE);
+                ag += k * ((argb >>> 8) & RED_BLUE);
+            }
+        }
+        return ((ag << 4) & 0xFF00FF00) | ((rb >>> 4) & RED_BLUE);
+    }
+
+    /**
+     * {@code (int) (alpha * percent)} for every 8-bit alpha, the table {@link #setAlpha(int, int[])} expects.
+     */
+    public static int[] alphaLut(double percent) {
+        int[] lut = new int[256];
+        for (int a = 0; a < 256; a++) {
+            double alpha = a * percent;
+            lut[a] = (int) alpha & 0xFF;
+        }
+        return lut;
+    }
+
+    /**
+     * Replaces the alpha of {@code argb} with its entry in {@code lut}.
+     */
+    public static int setAlpha(int argb, int[] lut) {
+        return lut[argb >>> 24] << 24 | (argb & 0xFFFFFF);
+    }
+
+    /**
+     * One cloud pass over a pixel: {@code white} at density {@code a} merges into {@code oldArgb},
+     * or replaces it where there was no cloud yet, and the result takes its alpha from {@code alphaLut}.
+     */
+    public static int cloud(int oldArgb, int white, double a, int[] alphaLut) {
+        return cloud(oldArgb, ((int) ((white >>> 24) * a) & 0xFF) << 24 | (white & 0xFFFFFF), alphaLut);
+    }
+
+    /**
+     * {@link #cloud(int, int, double, int[])} with the white at the cloud density already worked out.
+     */
+    public static int cloud(int oldArgb, int fresh, int[] alphaLut) {
+        return setAlpha(oldArgb == 0 ? fresh : mergeColors(oldArgb, fresh), alphaLut);
+    }
+}
@@ -0,0 +1,142 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Lazily built, bounded cache of per-radius lookup tables for the blast math.
+ * <p>
+ * Everything the renderer evaluates per pixel with {@code Math.hypot}, {@code Math.pow} and
+ * {@code Math.exp} only depends on the offset from the blast center and on the radius. It is also
+ * symmetric in the sign of both offset components, so one quadrant per radius is enough. The
+ * values are computed with the exact same expressions as before, so lookups give identical pixels.
+ */
+public class RadialTables {
+    static final byte OUTSIDE = 0;
+    static final byte CLOUD = 1;
+    static final byte SHOCKWAVE = 2;
+
+    /**
+     * Quadrant of one radius, indexed by {@code |di| * stride + |dj|}.
+     */
+    static final class Table {
+        final int r;
+        final int stride;
+        final double alphaPercent;
+        final double alphaCloudPercent;
+        /** {@link PixelKernels#alphaLut} of the two percentages. */
+        final int[] alphaLut;
+        final int[] alphaCloudLut;
+        /** Whether the radius is past the fade out and the blast draws nothing. */
+        final boolean trimmed;
+        /** {@link #OUTSIDE}, {@link #CLOUD} inside the radius, {@link #SHOCKWAVE} inside {@code r - 2}. */
+        final byte[] mask;
+        /** Gaussian density of the cloud at the offset. */
+        final double[] cloudAlpha;
+        /** {@code (int) (p * |di|)}, the shift towards the center that curves the shockwave. */
+        final short[] displacement;
+        /** Largest {@code |dj|} inside the radius at each {@code |di|}, the mask only shrinks further out. */
+        final short[] span;
+        /** Largest {@code |dj|} inside the shockwave at each {@code |di|}, -1 when the column has none. */
+        final short[] shockwaveSpan;
+
+        Table(int r, double max_R) {
+            this.r = r;
+            this.stride = r + 1;
+
+            double radiusPercent = (r + 0.01 * max_R) / max_R; // this adds 0.01 to max value of the ratio, to trim that frame later
+            alphaPercent = (1 - Math.pow(2 * radiusPercent - 1, 2));
+            alphaCloudPercent = (1 - Math.pow(2 * radiusPercent - 1, 4));
+            /* Trim values above 1 because of some Swing bug */
+            trimmed = radiusPercent > 1;
+            alphaLut = PixelKernels.alphaLut(alphaPercent);
+            alphaCloudLut = PixelKernels.alphaLut(alphaCloudPercent);
+
+            mask = new byte[stride * stride];
+            cloudAlpha = new double[stride * stride];
+            displacement = new short[stride * stride];
+            span = new short[stride];
+            shockwaveSpan = new short[stride];
+            for (int di = 0; di <= r; di++) {
+                span[di] = -1;
+                shockwaveSpan[di] = -1;
+                for (int dj = 0; dj <= r; dj++) {
+                    int index = di * stride + dj;
+                    double hypotR = Math.hypot(di, dj);
+                    if (hypotR > r) continue;
+
+                    mask[index] = hypotR <= r - 2 ? SHOCKWAVE : CLOUD;
+                    span[di] = (short) dj;
+                    if (mask[index] == SHOCKWAVE) {
+                        shockwaveSpan[di] = (short) dj;
+                    }
+                    cloudAlpha[index] = Math.exp(-Math.pow(Math.pow(2 * di / (double) r, 2) + Math.pow(2 * dj / (double) r, 2) - 2, 2));
+
+                    double z = Math.hypot(hypotR, r);
+                    double p = 20 * r / (z + 20 * r); // This adds curviture to the gas cloud
+                    displacement[index] = (short) (int) (p * di);
+                }
+            }
+        }
+
+        long bytes() {
+            return mask.length * (1L + 8 + 2) + stride * 2L * 2 + 2 * 256 * 4;
+        }
+    }
+
+    private final long maxBytes;
+    private long bytes;
+    private double max_R = Double.NaN;
+    private long builds;
+
+    private final LinkedHashMap<Integer, Table> tables = new LinkedHashMap<Integer, Table>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Table> eldest) {
+            if (bytes > maxBytes && size() > 1) {
+                bytes -= eldest.getValue().bytes();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    public RadialTables(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Drops every table when the radius the blasts fade out at changes.
+     */
+    public synchronized void setMaxR(double max_R) {
+        if (Double.compare(max_R, this.max_R) != 0) {
+            this.max_R = max_R;
+            tables.clear();
+            bytes = 0;
+        }
+    }
+
+    public synchronized double getMaxR() {
+        return max_R;
+    }
+
+    public synchronized Table get(int r) {
+        Table table = tables.get(r);
+        if (table == null) {
+            table = new Table(r, max_R);
+            bytes += table.bytes();
+            builds++;
+            tables.put(r, table);
+        }
+        return table;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return tables.size();
+    }
+
+    public synchronized long getBuilds() {
+        return builds;
+    }
+}
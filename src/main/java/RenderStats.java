@@ -0,0 +1,342 @@
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Per-frame measurements of the render pipeline and the simulation loop, exported over JMX
+ * as {@value #OBJECT_NAME} and drawn by the on-screen overlay.
+ */
+public class RenderStats implements RenderStatsMXBean {
+    public static final String OBJECT_NAME = "explosion:type=RenderStats";
+
+    /**
+     * Quantiles of one histogram. Times are converted to milliseconds.
+     */
+    public static final class Summary {
+        private final double p50;
+        private final double p99;
+        private final double max;
+        private final double last;
+        private final long count;
+
+        Summary(Histogram histogram, double scale) {
+            p50 = histogram.quantile(0.5) / scale;
+            p99 = histogram.quantile(0.99) / scale;
+            max = histogram.getMax() / scale;
+            last = histogram.getLast() / scale;
+            count = histogram.getCount();
+        }
+
+        public double getP50() {
+            return p50;
+        }
+
+        public double getP99() {
+            return p99;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public double getLast() {
+            return last;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final Histogram frame = new Histogram();
+    private final Histogram setup = new Histogram();
+    private final Histogram background = new Histogram();
+    private final Histogram cloud = new Histogram();
+    private final Histogram shockwave = new Histogram();
+    private final Histogram blit = new Histogram();
+    private final Histogram blasts = new Histogram();
+    private final Histogram pixels = new Histogram();
+    private final Histogram tickLag = new Histogram();
+    private final Histogram allocated = new Histogram();
+    private final Histogram levelOfDetail = new Histogram();
+
+    private final com.sun.management.ThreadMXBean threads;
+    // Threads of the render pool, their allocations count with the calling thread's
+    private volatile long[] workerIds = new long[0];
+    private volatile SimulationLoop simulation;
+    private volatile BlastStore blastStore;
+    private volatile BackgroundCache backgroundCache;
+
+    public RenderStats() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        threads = bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+                ? (com.sun.management.ThreadMXBean) bean : null;
+    }
+
+    /**
+     * Registers with the platform MBean server. Failing to do so only loses the JMX view.
+     */
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException | SecurityException e) {
+            System.err.println("Render stats not registered as " + OBJECT_NAME + ": " + e);
+        }
+    }
+
+    public void setSimulation(SimulationLoop simulation) {
+        this.simulation = simulation;
+    }
+
+    public void setBlastStore(BlastStore blastStore) {
+        this.blastStore = blastStore;
+    }
+
+    public void setBackgroundCache(BackgroundCache backgroundCache) {
+        this.backgroundCache = backgroundCache;
+    }
+
+    /**
+     * Makes the threads of a pool blasts are rendered on, so {@link #allocatedBytes} counts what they allocate.
+     */
+    public ForkJoinPool.ForkJoinWorkerThreadFactory workerThreadFactory() {
+        return pool -> {
+            ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            addWorker(worker.getId());
+            return worker;
+        };
+    }
+
+    private synchronized void addWorker(long id) {
+        long[] ids = workerIds;
+        long[] live = new long[ids.length + 1];
+        int n = 0;
+        if (threads != null && ids.length > 0) {
+            // Workers the pool retired are gone for good
+            long[] bytes = threads.getThreadAllocatedBytes(ids);
+            for (int k = 0; k < ids.length; k++) {
+                if (bytes[k] >= 0) {
+                    live[n++] = ids[k];
+                }
+            }
+        }
+        live[n++] = id;
+        workerIds = Arrays.copyOf(live, n);
+    }
+
+    /**
+     * Bytes allocated so far by the calling thread and the render pool's workers, or -1 when the
+     * JVM does not track it. A worker retired between two calls makes the difference negative,
+     * which {@link #recordFrame} skips.
+     */
+    public long allocatedBytes() {
+        if (threads == null) {
+            return -1;
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        long[] ids = workerIds;
+        if (ids.length > 0) {
+            for (long bytes : threads.getThreadAllocatedBytes(ids)) {
+                allocated += Math.max(bytes, 0);
+            }
+        }
+        return allocated;
+    }
+
+    /**
+     * Records one frame: {@code setupNanos} binding the layers and picking the blasts in view,
+     * {@code backgroundNanos} drawing the background onto the board, the two blast passes, and
+     * {@code blitNanos} drawing the rest and showing the frame. Phases that were not measured are
+     * passed as negative values and skipped.
+     */
+    public void recordFrame(long setupNanos, long backgroundNanos, long cloudNanos, long shockwaveNanos, long blitNanos,
+                            int activeBlasts, long pixelsTouched, long allocatedBytes) {
+        frame.record(setupNanos + backgroundNanos + Math.max(cloudNanos, 0) + shockwaveNanos + blitNanos);
+        setup.record(setupNanos);
+        background.record(backgroundNanos);
+        if (cloudNanos >= 0) {
+            cloud.record(cloudNanos);
+        }
+        shockwave.record(shockwaveNanos);
+        blit.record(blitNanos);
+        blasts.record(activeBlasts);
+        pixels.record(pixelsTouched);
+        if (allocatedBytes >= 0) {
+            allocated.record(allocatedBytes);
+        }
+    }
+
+    /**
+     * Records the {@link LevelOfDetail} level the frame was rendered at.
+     */
+    public void recordLevelOfDetail(int level) {
+        levelOfDetail.record(level);
+    }
+
+    public void recordTickLag(long lagNanos) {
+        tickLag.record(lagNanos);
+    }
+
+    /**
+     * Lines for the overlay, one per metric.
+     */
+    public String[] overlayLines() {
+        return new String[]{
+                line("frame ms", getFrameTime()),
+                line("setup ms", getSetupTime()),
+                line("background ms", getBackgroundTime()),
+                line("cloud ms", getCloudTime()),
+                line("shockwave ms", getShockwaveTime()),
+                line("blit ms", getBlitTime()),
+                line("tick lag ms", getTickLag()),
+                line("blasts", getActiveBlasts()),
+                line("pixels", getPixelsTouched()),
+                line("alloc bytes", getAllocatedBytes()),
+                lodLine(getLevelOfDetail()),
+                "ticks " + getTicks() + "  late ticks " + getLateTicks() + "  dropped ticks " + getDroppedTicks(),
+                "merged spawns " + getMergedSpawns() + "  spawn overflows " + getSpawnOverflows(),
+                String.format(Locale.ROOT, "backgrounds   hits %d  misses %d  last decode %.1f ms",
+                        getBackgroundHits(), getBackgroundMisses(), getLastBackgroundDecodeTime())
+        };
+    }
+
+    private static String line(String name, Summary summary) {
+        return String.format(Locale.ROOT, "%-14s last %9.2f  p50 %9.2f  p99 %9.2f  max %9.2f",
+                name, summary.getLast(), summary.getP50(), summary.getP99(), summary.getMax());
+    }
+
+    private static String lodLine(Summary summary) {
+        return String.format(Locale.ROOT, "%-14s %-14s p50 %9.0f  p99 %9.0f  max %9.0f",
+                "lod", LevelOfDetail.name((int) summary.getLast()), summary.getP50(), summary.getP99(), summary.getMax());
+    }
+
+    @Override
+    public Summary getFrameTime() {
+        return new Summary(frame, NANOS_PER_MILLI);
+    }
+
+    @Override
+    public Summary getSetupTime() {
+        return new Summary(setup, NANOS_PER_MILLI);
+    }
+
+    @Override
+    public Summary getBackgroundTime() {
+        return new Summary(background, NANOS_PER_MILLI);
+    }
+
+    @Override
+    public Summary getCloudTime() {
+        return new Summary(cloud, NANOS_PER_MILLI);
+    }
+
+    @Override
+    public Summary getShockwaveTime() {
+        return new Summary(shockwave, NANOS_PER_MILLI);
+    }
+
+    @Override
+    public Summary getBlitTime() {
+        return new Summary(blit, NANOS_PER_MILLI);
+    }
+
+    @Override
+    public Summary getActiveBlasts() {
+        return new Summary(blasts, 1);
+    }
+
+    @Override
+    public Summary getPixelsTouched() {
+        return new Summary(pixels, 1);
+    }
+
+    @Override
+    public Summary getTickLag() {
+        return new Summary(tickLag, NANOS_PER_MILLI);
+    }
+
+    @Override
+    public Summary getAllocatedBytes() {
+        return new Summary(allocated, 1);
+    }
+
+    @Override
+    public Summary getLevelOfDetail() {
+        return new Summary(levelOfDetail, 1);
+    }
+
+    @Override
+    public long getTicks() {
+        SimulationLoop loop = simulation;
+        return loop != null ? loop.getTicks() : 0;
+    }
+
+    @Override
+    public long getLateTicks() {
+        SimulationLoop loop = simulation;
+        return loop != null ? loop.getLateTicks() : 0;
+    }
+
+    @Override
+    public long getDroppedTicks() {
+        SimulationLoop loop = simulation;
+        return loop != null ? loop.getDroppedTicks() : 0;
+    }
+
+    @Override
+    public long getMergedSpawns() {
+        BlastStore store = blastStore;
+        return store != null ? store.getMerged() : 0;
+    }
+
+    @Override
+    public long getSpawnOverflows() {
+        BlastStore store = blastStore;
+        return store != null ? store.getOverflows() : 0;
+    }
+
+    @Override
+    public long getBackgroundHits() {
+        BackgroundCache cache = backgroundCache;
+        return cache != null ? cache.getHits() : 0;
+    }
+
+    @Override
+    public long getBackgroundMisses() {
+        BackgroundCache cache = backgroundCache;
+        return cache != null ? cache.getMisses() : 0;
+    }
+
+    @Override
+    public double getLastBackgroundDecodeTime() {
+        BackgroundCache cache = backgroundCache;
+        return cache != null ? cache.getLastDecodeNanos() / NANOS_PER_MILLI : 0;
+    }
+
+    @Override
+    public double getTotalBackgroundDecodeTime() {
+        BackgroundCache cache = backgroundCache;
+        return cache != null ? cache.getTotalDecodeNanos() / NANOS_PER_MILLI : 0;
+    }
+
+    @Override
+    public void reset() {
+        frame.reset();
+        setup.reset();
+        background.reset();
+        cloud.reset();
+        shockwave.reset();
+        blit.reset();
+        blasts.reset();
+        pixels.reset();
+        tickLag.reset();
+        allocated.reset();
+        levelOfDetail.reset();
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * Management view of {@link RenderStats}. Times are in milliseconds, quantiles are since the last reset.
+ */
+public interface RenderStatsMXBean {
+    RenderStats.Summary getFrameTime();
+
+    /** Binding the layers and picking the blasts in view. */
+    RenderStats.Summary getSetupTime();
+
+    /** Drawing the background onto the board. */
+    RenderStats.Summary getBackgroundTime();
+
+    /** Only measured by the tile rasterizer, the single-threaded path interleaves it with the shockwave pass. */
+    RenderStats.Summary getCloudTime();
+
+    RenderStats.Summary getShockwaveTime();
+
+    /** Drawing the crosshairs and the effect layer onto the board and showing it. */
+    RenderStats.Summary getBlitTime();
+
+    RenderStats.Summary getActiveBlasts();
+
+    RenderStats.Summary getPixelsTouched();
+
+    RenderStats.Summary getTickLag();
+
+    /** Bytes the render thread and the render pool's workers allocated per frame. */
+    RenderStats.Summary getAllocatedBytes();
+
+    /** {@link LevelOfDetail} level of the frames, 0 is full detail. */
+    RenderStats.Summary getLevelOfDetail();
+
+    /** Simulation ticks run so far. */
+    long getTicks();
+
+    /** Ticks that started after their slot, the loop caught up on them. */
+    long getLateTicks();
+
+    long getDroppedTicks();
+
+    /** Spawns dropped for landing within the merge distance of another blast. */
+    long getMergedSpawns();
+
+    /** Spawns that found the spawn ring full. */
+    long getSpawnOverflows();
+
+    /** Background picks served from the decoded cache. */
+    long getBackgroundHits();
+
+    /** Background picks that had to be decoded, on the decoder thread. */
+    long getBackgroundMisses();
+
+    /** Time the last background decode took, in milliseconds. */
+    double getLastBackgroundDecodeTime();
+
+    /** Time all background decodes took, in milliseconds. */
+    double getTotalBackgroundDecodeTime();
+
+    void reset();
+}
@@ -0,0 +1,29 @@
+/**
+ * The {@link PixelKernels} over runs of pixels. Every implementation must give the same bits
+ * as applying the point kernels pixel by pixel.
+ */
+public interface RowKernels {
+    /**
+     * {@code dst[d + n] = mergeColors(background[b + n], foreground[f + n])}.
+     */
+    void mergeColors(int[] background, int b, int[] foreground, int f, int[] dst, int d, int length);
+
+    /**
+     * {@code dst[d + n] = avg2(first[a + n], second[b + n])}.
+     */
+    void avg2(int[] first, int a, int[] second, int b, int[] dst, int d, int length);
+
+    /**
+     * {@code dst[d + n] = setAlpha(src[s + n], lut)}.
+     */
+    void setAlpha(int[] src, int s, int[] lut, int[] dst, int d, int length);
+
+    /**
+     * Blurs row {@code y} of a {@code width} x {@code height} image into {@code dst[d..d + width)},
+     * with the same edge handling as {@link PixelKernels#gauss}. The blur is separable: the three source
+     * rows are summed vertically first, then horizontally. {@code dst} must not overlap the source.
+     */
+    void gauss(int[] src, int width, int height, int y, int[] dst, int d);
+
+    String name();
+}
@@ -0,0 +1,86 @@
+/**
+ * Plain Java {@link RowKernels}, also the reference the vector ones are checked against.
+ * Instances keep scratch rows for the blur and are not safe to share between threads.
+ */
+public class ScalarRowKernels implements RowKernels {
+    private int[] verticalRb = new int[0];
+    private int[] verticalAg = new int[0];
+
+    @Override
+    public void mergeColors(int[] background, int b, int[] foreground, int f, int[] dst, int d, int length) {
+        for (int n = 0; n < length; n++) {
+            dst[d + n] = PixelKernels.mergeColors(background[b + n], foreground[f + n]);
+        }
+    }
+
+    @Override
+    public void avg2(int[] first, int a, int[] second, int b, int[] dst, int d, int length) {
+        for (int n = 0; n < length; n++) {
+            dst[d + n] = PixelKernels.avg2(first[a + n], second[b + n]);
+        }
+    }
+
+    @Override
+    public void setAlpha(int[] src, int s, int[] lut, int[] dst, int d, int length) {
+        for (int n = 0; n < length; n++) {
+            dst[d + n] = PixelKernels.setAlpha(src[s + n], lut);
+        }
+    }
+
+    @Override
+    public void gauss(int[] src, int width, int height, int y, int[] dst, int d) {
+        if (verticalRb.length < width) {
+            verticalRb = new int[width];
+            verticalAg = new int[width];
+        }
+        int[] rb = verticalRb;
+        int[] ag = verticalAg;
+
+        boolean above = y - 1 > 0 && y - 1 < height;
+        boolean center = y > 0 && y < height;
+        boolean below = y + 1 > 0 && y + 1 < height;
+        // Column 0 is left out of the blur like in the point kernel
+        rb[0] = 0;
+        ag[0] = 0;
+        for (int x = 1; x < width; x++) {
+            int sumRb = 0;
+            int sumAg = 0;
+            if (above) {
+                int argb = src[(y - 1) * width + x];
+                sumRb += argb & PixelKernels.RED_BLUE;
+                sumAg += (argb >>> 8) & PixelKernels.RED_BLUE;
+            }
+            if (center) {
+                int argb = src[y * width + x];
+                sumRb += (argb & PixelKernels.RED_BLUE) << 1;
+                sumAg += ((argb >>> 8) & PixelKernels.RED_BLUE) << 1;
+            }
+            if (below) {
+                int argb = src[(y + 1) * width + x];
+                sumRb += argb & PixelKernels.RED_BLUE;
+                sumAg += (argb >>> 8) & PixelKernels.RED_BLUE;
+            }
+            rb[x] = sumRb;
+            ag[x] = sumAg;
+        }
+
+        for (int x = 0; x < width; x++) {
+            int sumRb = rb[x] << 1;
+            int sumAg = ag[x] << 1;
+            if (x > 0) {
+                sumRb += rb[x - 1];
+                sumAg += ag[x - 1];
+            }
+            if (x + 1 < width) {
+                sumRb += rb[x + 1];
+                sumAg += ag[x + 1];
+            }
+            dst[d + x] = ((sumAg << 4) & 0xFF00FF00) | ((sumRb >>> 4) & PixelKernels.RED_BLUE);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,309 @@
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many independent strike scenarios on {@link SimulationEngine}s for Monte Carlo studies and
+ * streams their coverage to CSV.
+ * <p>
+ * Every scenario gets its own thread: a virtual one on JVMs that have them, looked up at run time
+ * so the build stays on the older release, and a platform thread from a pool otherwise. Only
+ * {@code --parallel} scenarios hold their coverage layers at once, the others wait on a semaphore,
+ * which costs a virtual thread next to nothing. The background is loaded once and only read, for
+ * the board size, and the radius tables are shared too.
+ * <p>
+ * Rows are written as scenarios finish, so they come out of order; the first column tells them apart.
+ * When the writer falls behind, scenarios wait for room in its queue.
+ */
+public class ScenarioRunner {
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java SwingExplosion --scenarios [options]",
+            "  --count N                 scenarios to run (default: 1000)",
+            "  --strikes N               blasts per scenario (default: 20)",
+            "  --window N                ticks over which the strikes of a scenario start (default: 120)",
+            "  --pattern uniform|cluster strikes spread over the board or around one random point (default: uniform)",
+            "  --spread N                standard deviation of a cluster, in pixels (default: 150)",
+            "  --background FILE         board image, only its size matters (default: bundled background.png)",
+            "  --size WxH                board size (default: background size)",
+            "  --max-iter N              (default: 200)",
+            "  --blast-increment D       (default: 0.6)",
+            "  --fog-height D            (default: 1.0)",
+            "  --seed N                  seed of the first scenario, the others follow (default: 48)",
+            "  --parallel N              scenarios measured at once (default: 2 x cores)",
+            "  --every N                 write a row every N ticks of every scenario instead of one per scenario (default: 0)",
+            "  --out FILE|-              CSV file, or - for stdout (default: -)",
+            "Scenarios run on virtual threads on Java 21 and later, and on a pool of --parallel platform",
+            "threads on older JVMs or with -Dexplosion.platformThreads=true. The run says which on stderr.");
+
+    private static final String SUMMARY_HEADER = "scenario,seed,strikes,ticks,peak_shockwave_coverage,peak_tick,mean_cloud_density,final_cloud_density,final_cloud_coverage";
+    private static final String SERIES_HEADER = "scenario,tick,active,shockwave_coverage,cloud_density,cloud_coverage";
+    // Queued after the last row, rows are never empty
+    private static final String END = "";
+    // -Dexplosion.rowQueue=N rows waiting for the writer before scenarios wait for it
+    private static final int ROW_QUEUE = Integer.getInteger("explosion.rowQueue", 4096);
+
+    private BufferedImage background;
+    private int width = -1;
+    private int height = -1;
+    private int count = 1000;
+    private int strikes = 20;
+    private int window = 120;
+    private boolean cluster;
+    private double spread = 150;
+    private int max_iter = 200;
+    private double blast_increment = 0.6;
+    private double fogHeight = 1.0;
+    private long seed = 48;
+    private int parallel = 2 * Runtime.getRuntime().availableProcessors();
+    private int every;
+    private String out = "-";
+
+    public static void main(String[] args) {
+        ScenarioRunner runner = new ScenarioRunner();
+        try {
+            runner.parse(args);
+            runner.run();
+        } catch (IllegalArgumentException iae) {
+            System.err.println(iae.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException io) {
+            System.err.println("Scenarios failed: " + io.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private void parse(String[] args) throws IOException {
+        for (int n = 0; n < args.length; n++) {
+            String arg = args[n];
+            if (arg.equals("--scenarios")) continue;
+            if (arg.equals("--help")) {
+                System.err.println(USAGE);
+                System.exit(0);
+            }
+            if (n + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++n];
+            try {
+                switch (arg) {
+                    case "--count":
+                        count = Integer.parseInt(value);
+                        break;
+                    case "--strikes":
+                        strikes = Integer.parseInt(value);
+                        break;
+                    case "--window":
+                        window = Math.max(1, Integer.parseInt(value));
+                        break;
+                    case "--pattern":
+                        if (!value.equals("uniform") && !value.equals("cluster")) {
+                            throw new IllegalArgumentException("Unknown pattern " + value);
+                        }
+                        cluster = value.equals("cluster");
+                        break;
+                    case "--spread":
+                        spread = Double.parseDouble(value);
+                        break;
+                    case "--background":
+                        background = ImageIO.read(new File(value));
+                        if (background == null) {
+                            throw new IOException("Cannot read " + value);
+                        }
+                        break;
+                    case "--size":
+                        String[] wh = value.toLowerCase(Locale.ROOT).split("x");
+                        width = Integer.parseInt(wh[0]);
+                        height = Integer.parseInt(wh[1]);
+                        break;
+                    case "--max-iter":
+                        max_iter = Integer.parseInt(value);
+                        break;
+                    case "--blast-increment":
+                        blast_increment = Double.parseDouble(value);
+                        break;
+                    case "--fog-height":
+                        fogHeight = Double.parseDouble(value);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "--parallel":
+                        parallel = Math.max(1, Integer.parseInt(value));
+                        break;
+                    case "--every":
+                        every = Integer.parseInt(value);
+                        break;
+                    case "--out":
+                        out = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Bad value for " + arg + ": " + value);
+            }
+        }
+        if (width < 0) {
+            if (background == null) {
+                background = ImageIO.read(ScenarioRunner.class.getResource("background.png"));
+            }
+            width = background.getWidth();
+            height = background.getHeight();
+        }
+    }
+
+    private void run() throws IOException {
+        double max_R = max_iter * blast_increment;
+        RadialTables tables = new RadialTables(Long.getLong("explosion.tableBytes", 32L << 20));
+        tables.setMaxR(max_R);
+
+        // Bounded, so a slow disk holds the scenarios up instead of piling rows on the heap
+        BlockingQueue<String> rows = new ArrayBlockingQueue<>(ROW_QUEUE);
+        Writer writer = out.equals("-")
+                ? new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8)
+                : new OutputStreamWriter(new FileOutputStream(out), StandardCharsets.UTF_8);
+        // One platform thread owns the output, scenario threads never block on I/O
+        Future<Void> written = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "scenario-writer");
+            t.setDaemon(true);
+            return t;
+        }).submit(() -> {
+            try (BufferedWriter csv = new BufferedWriter(writer, 1 << 16)) {
+                csv.write(every > 0 ? SERIES_HEADER : SUMMARY_HEADER);
+                csv.newLine();
+                for (String row = rows.take(); !row.isEmpty(); row = rows.take()) {
+                    csv.write(row);
+                    csv.newLine();
+                    if (rows.isEmpty()) {
+                        csv.flush();
+                    }
+                }
+            }
+            return null;
+        });
+
+        Semaphore measuring = new Semaphore(parallel);
+        AtomicInteger failed = new AtomicInteger();
+        long start = System.nanoTime();
+        ExecutorService scenarios = newScenarioExecutor(parallel);
+        boolean virtual = !(scenarios instanceof ThreadPoolExecutor);
+        if (virtual) {
+            System.err.printf(Locale.ROOT, "Running %d scenarios on virtual threads%n", count);
+        } else {
+            System.err.printf(Locale.ROOT, "Running %d scenarios on a pool of %d platform threads%s%n", count, parallel,
+                    Boolean.getBoolean("explosion.platformThreads") ? ""
+                            : ", virtual threads need Java 21 and this is Java " + Runtime.version().feature());
+        }
+        try {
+            for (int k = 0; k < count; k++) {
+                int scenario = k;
+                scenarios.execute(() -> {
+                    try {
+                        measuring.acquire();
+                        try {
+                            runScenario(scenario, max_R, tables, rows);
+                        } finally {
+                            measuring.release();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                        System.err.println("Scenario " + scenario + " failed: " + e);
+                    }
+                });
+            }
+        } finally {
+            scenarios.shutdown();
+        }
+        try {
+            scenarios.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            rows.put(END);
+            written.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.err.printf(Locale.ROOT, "Ran %d scenarios of %d strikes on %dx%d in %.2f s (%.1f/s) on %s threads, %d at once, %d failed%n",
+                count, strikes, width, height, elapsed, count / elapsed, virtual ? "virtual" : "platform", parallel, failed.get());
+    }
+
+    private void runScenario(int scenario, double max_R, RadialTables tables, BlockingQueue<String> rows) throws InterruptedException {
+        long scenarioSeed = seed + scenario;
+        Random rnd = new Random(scenarioSeed);
+        int[] xs = new int[strikes];
+        int[] ys = new int[strikes];
+        long[] starts = new long[strikes];
+        double centerX = rnd.nextInt(width);
+        double centerY = rnd.nextInt(height);
+        for (int n = 0; n < strikes; n++) {
+            if (cluster) {
+                xs[n] = (int) Math.round(centerX + rnd.nextGaussian() * spread);
+                ys[n] = (int) Math.round(centerY + rnd.nextGaussian() * spread);
+            } else {
+                xs[n] = rnd.nextInt(width);
+                ys[n] = rnd.nextInt(height);
+            }
+            // Packed with the index so sorting keeps the strikes of one tick in order
+            starts[n] = (long) rnd.nextInt(window) << 32 | n;
+        }
+        Arrays.sort(starts);
+
+        SimulationEngine engine = new SimulationEngine(new BlastStore(strikes, Math.max(strikes, 2)), max_R, blast_increment, 0);
+        engine.enableCoverage(width, height, fogHeight, tables);
+        double peak = 0;
+        long peakTick = 0;
+        double densitySum = 0;
+        int next = 0;
+        while (next < strikes || engine.getActiveCount() > 0) {
+            for (; next < strikes && (starts[next] >>> 32) <= engine.getTick(); next++) {
+                int n = (int) starts[next];
+                engine.spawn(xs[n], ys[n]);
+            }
+            engine.step();
+            double coverage = engine.getShockwaveCoverage();
+            if (coverage > peak) {
+                peak = coverage;
+                peakTick = engine.getTick();
+            }
+            densitySum += engine.getCloudDensity();
+            if (every > 0 && engine.getTick() % every == 0) {
+                rows.put(String.format(Locale.ROOT, "%d,%d,%d,%.6f,%.6f,%.6f", scenario, engine.getTick(), engine.getActiveCount(),
+                        coverage, engine.getCloudDensity(), engine.getCloudCoverage()));
+            }
+        }
+        if (every <= 0) {
+            rows.put(String.format(Locale.ROOT, "%d,%d,%d,%d,%.6f,%d,%.6f,%.6f,%.6f", scenario, scenarioSeed, strikes, engine.getTick(),
+                    peak, peakTick, densitySum / Math.max(1, engine.getTick()), engine.getCloudDensity(), engine.getCloudCoverage()));
+        }
+    }
+
+    /**
+     * One virtual thread per task where the JVM has them, from Java 21 on, otherwise a pool of
+     * {@code fallbackThreads} platform threads.
+     */
+    static ExecutorService newScenarioExecutor(int fallbackThreads) {
+        // -Dexplosion.platformThreads=true stays on platform threads even where virtual ones exist
+        if (!Boolean.getBoolean("explosion.platformThreads")) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // fall through to platform threads
+            }
+        }
+        return Executors.newFixedThreadPool(fallbackThreads);
+    }
+}
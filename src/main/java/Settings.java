@@ -0,0 +1,104 @@
+import java.awt.image.BufferedImage;
+
+/**
+ * What the board is set to, as one immutable snapshot. A change makes a new snapshot, which the
+ * board publishes whole, so the render and simulation threads read one per frame or tick and never
+ * see half of a change.
+ */
+public final class Settings {
+    private final double fogHeight;
+    private final double propagationSpeed;
+    private final int maxIter;
+    private final double blastIncrement;
+    private final int spawnR;
+    private final double renderScale;
+    private final BufferedImage background;
+
+    public Settings(double fogHeight, double propagationSpeed, int maxIter, double blastIncrement, int spawnR, double renderScale,
+                    BufferedImage background) {
+        this.fogHeight = fogHeight;
+        this.propagationSpeed = propagationSpeed;
+        this.maxIter = maxIter;
+        this.blastIncrement = blastIncrement;
+        this.spawnR = spawnR;
+        this.renderScale = renderScale;
+        this.background = background;
+    }
+
+    public double getFogHeight() {
+        return fogHeight;
+    }
+
+    public double getPropagationSpeed() {
+        return propagationSpeed;
+    }
+
+    /**
+     * Ticks a blast of yield 1 lives for.
+     */
+    public int getMaxIter() {
+        return maxIter;
+    }
+
+    public double getBlastIncrement() {
+        return blastIncrement;
+    }
+
+    public int getSpawnR() {
+        return spawnR;
+    }
+
+    /**
+     * Radius blasts fade out at.
+     */
+    public double getMaxR() {
+        return spawnR + maxIter * blastIncrement;
+    }
+
+    /**
+     * Size of the effect layer relative to the board, blasts are drawn at this scale and stretched to the board.
+     */
+    public double getRenderScale() {
+        return renderScale;
+    }
+
+    /**
+     * {@link #getMaxR} in effect layer pixels.
+     */
+    public double getLayerMaxR() {
+        return getMaxR() * renderScale;
+    }
+
+    /**
+     * The background without a map, never drawn into once it is set.
+     */
+    public BufferedImage getBackground() {
+        return background;
+    }
+
+    public Settings withFogHeight(double fogHeight) {
+        return new Settings(fogHeight, propagationSpeed, maxIter, blastIncrement, spawnR, renderScale, background);
+    }
+
+    public Settings withPropagationSpeed(double propagationSpeed) {
+        return new Settings(fogHeight, propagationSpeed, maxIter, blastIncrement, spawnR, renderScale, background);
+    }
+
+    public Settings withMaxIter(int maxIter) {
+        return new Settings(fogHeight, propagationSpeed, maxIter, blastIncrement, spawnR, renderScale, background);
+    }
+
+    public Settings withRenderScale(double renderScale) {
+        return new Settings(fogHeight, propagationSpeed, maxIter, blastIncrement, spawnR, renderScale, background);
+    }
+
+    public Settings withBackground(BufferedImage background) {
+        return new Settings(fogHeight, propagationSpeed, maxIter, blastIncrement, spawnR, renderScale, background);
+    }
+
+    @Override
+    public String toString() {
+        return "fog=" + fogHeight + " speed=" + propagationSpeed + " maxIter=" + maxIter + " increment=" + blastIncrement
+                + " max_R=" + getMaxR() + " scale=" + renderScale;
+    }
+}
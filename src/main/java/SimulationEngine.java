@@ -0,0 +1,180 @@
+import java.util.Arrays;
+
+/**
+ * The blast model on its own: the blasts, how they grow each tick, and optionally how much of the
+ * board they cover. Nothing here touches AWT, so engines can be made by the thousand off any window.
+ * <p>
+ * Coverage is measured once per tick, after the blasts grew. The shockwave coverage is the share of
+ * the board inside the shockwave ring of at least one blast. The cloud runs the renderer's cloud pass
+ * on a packed alpha layer, one pass per tick as in {@link Timeline}, and its density is the mean
+ * alpha over the board. The packed layer stays within one level of the renderer's full one.
+ * <p>
+ * Spawns may come from any thread through the {@link BlastStore}, ticks from one thread at a time.
+ */
+public class SimulationEngine {
+    private final BlastStore blasts;
+    private final double max_R;
+    private final double blastIncrement;
+    private final float spawnR;
+    private long tick;
+
+    // Coverage, only when enabled
+    private int width;
+    private int height;
+    private RadialTables tables;
+    private int cloudWhite;
+    private byte[] cloud;
+    private long[] shockwave;
+    private long shockwavePixels;
+    private long cloudAlphaSum;
+    private long cloudPixels;
+
+    public SimulationEngine(BlastStore blasts, double max_R, double blastIncrement, float spawnR) {
+        this.blasts = blasts;
+        this.max_R = max_R;
+        this.blastIncrement = blastIncrement;
+        this.spawnR = spawnR;
+    }
+
+    /**
+     * Measures coverage over a {@code width} x {@code height} board from the next tick on. The
+     * tables may be shared with other engines of the same {@code max_R}.
+     */
+    public void enableCoverage(int width, int height, double fogHeight, RadialTables tables) {
+        this.width = width;
+        this.height = height;
+        this.tables = tables;
+        int ah = (int) ((255 + 255 * fogHeight) / 2);
+        cloudWhite = (ah & 0xFF) << 24 | 0xFFFFFF;
+        cloud = new byte[width * height];
+        shockwave = new long[(width * height + 63) >>> 6];
+        tables.setMaxR(max_R);
+    }
+
+    public BlastStore getBlasts() {
+        return blasts;
+    }
+
+    /**
+     * Queues a blast at ({@code x}, {@code y}), it joins on the next {@link #step}.
+     */
+    public void spawn(int x, int y) {
+        blasts.spawn(x, y, spawnR);
+    }
+
+    /**
+     * Queues a blast of yield {@code yield}, see {@link BlastStore#spawn(int, int, float, float)}.
+     */
+    public void spawn(int x, int y, float yield) {
+        blasts.spawn(x, y, spawnR, yield);
+    }
+
+    /**
+     * One simulation tick: queued spawns join, every blast grows, burnt-out ones go, and coverage is
+     * measured when enabled.
+     */
+    public void step() {
+        step(max_R, blastIncrement);
+    }
+
+    /**
+     * {@link #step} with the blasts fading out at {@code max_R} and growing by {@code blastIncrement},
+     * for a board whose settings change while it runs. Coverage stays on the tables it was enabled with.
+     */
+    public void step(double max_R, double blastIncrement) {
+        blasts.tick(max_R, blastIncrement);
+        tick++;
+        if (cloud != null) {
+            measure();
+        }
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Blasts after the last tick, including ones that have not grown past zero yet.
+     */
+    public int getActiveCount() {
+        BlastStore.Snapshot snapshot = blasts.acquire();
+        try {
+            return snapshot.size;
+        } finally {
+            blasts.release(snapshot);
+        }
+    }
+
+    /**
+     * Share of the board inside some shockwave at the last tick.
+     */
+    public double getShockwaveCoverage() {
+        return cloud == null ? Double.NaN : shockwavePixels / (double) (width * height);
+    }
+
+    /**
+     * Mean cloud alpha over the board at the last tick, from 0 to 1.
+     */
+    public double getCloudDensity() {
+        return cloud == null ? Double.NaN : cloudAlphaSum / (255.0 * width * height);
+    }
+
+    /**
+     * Share of the board with any cloud at the last tick.
+     */
+    public double getCloudCoverage() {
+        return cloud == null ? Double.NaN : cloudPixels / (double) (width * height);
+    }
+
+    private void measure() {
+        Arrays.fill(shockwave, 0);
+        shockwavePixels = 0;
+        BlastStore.Snapshot snapshot = blasts.acquire();
+        try {
+            for (int n = 0; n < snapshot.size; n++) {
+                int r = (int) snapshot.r[n];
+                if (r > 0) {
+                    cover(snapshot.x[n], snapshot.y[n], tables.get(r));
+                }
+            }
+        } finally {
+            blasts.release(snapshot);
+        }
+    }
+
+    /**
+     * Runs the cloud pass of one blast and marks its shockwave, over the circle spans like the renderer.
+     */
+    private void cover(int x, int y, RadialTables.Table table) {
+        if (table.trimmed) {
+            return;
+        }
+        int r = table.r;
+        int stride = table.stride;
+        int left = Math.max(x - r, 0);
+        int right = Math.min(x + r, width - 1);
+        for (int i = left; i <= right; i++) {
+            int di = Math.abs(i - x);
+            int top = Math.max(y - table.span[di], 0);
+            int bottom = Math.min(y + table.span[di], height - 1);
+            int reach = table.shockwaveSpan[di];
+            for (int j = top; j <= bottom; j++) {
+                int dj = Math.abs(j - y);
+                int index = j * width + i;
+                int before = cloud[index] & 0xFF;
+                int after = PixelKernels.cloud(FrameBuffers.unpack(cloud[index]), cloudWhite, table.cloudAlpha[di * stride + dj], table.alphaCloudLut) >>> 24;
+                cloud[index] = (byte) after;
+                // The sums follow the pixels instead of scanning the board every tick
+                cloudAlphaSum += after - before;
+                cloudPixels += (after != 0 ? 1 : 0) - (before != 0 ? 1 : 0);
+                if (dj <= reach) {
+                    long bit = 1L << index;
+                    if ((shockwave[index >>> 6] & bit) == 0) {
+                        shockwave[index >>> 6] |= bit;
+                        shockwavePixels++;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+/**
+ * Fixed-timestep driver for the simulation.
+ * <p>
+ * Ticks are scheduled on a {@link System#nanoTime()} timeline, so a slow tick is caught up
+ * by running the next ones back to back instead of stretching every later frame. Rendering
+ * runs on its own rate, which can be changed while the loop is running. The loop stops when
+ * its thread is interrupted.
+ */
+public class SimulationLoop implements Runnable {
+    /** Ticks run back to back before the loop gives up and drops the rest of the backlog. */
+    private static final int MAX_CATCH_UP_TICKS = 5;
+
+    private final Runnable tick;
+    private final Runnable render;
+    private volatile LongConsumer tickLagListener = lag -> {
+    };
+
+    private volatile long tickPeriodNanos;
+    private volatile long renderPeriodNanos;
+
+    private volatile long ticks;
+    private volatile long lateTicks;
+    private volatile long droppedTicks;
+    private volatile long frames;
+
+    public SimulationLoop(Runnable tick, Runnable render, double ticksPerSecond, double framesPerSecond) {
+        this.tick = tick;
+        this.render = render;
+        setTickRate(ticksPerSecond);
+        setRenderRate(framesPerSecond);
+    }
+
+    public void setTickRate(double ticksPerSecond) {
+        tickPeriodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ticksPerSecond);
+    }
+
+    public void setRenderRate(double framesPerSecond) {
+        renderPeriodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / framesPerSecond);
+    }
+
+    /**
+     * Receives, for every tick, how many nanoseconds after its scheduled time it started.
+     */
+    public void setTickLagListener(LongConsumer tickLagListener) {
+        this.tickLagListener = tickLagListener;
+    }
+
+    @Override
+    public void run() {
+        long nextTick = System.nanoTime();
+        long nextRender = nextTick;
+
+        while (!Thread.currentThread().isInterrupted()) {
+            long now = System.nanoTime();
+            long tickPeriod = tickPeriodNanos;
+
+            int caughtUp = 0;
+            LongConsumer lagListener = tickLagListener;
+            while (now - nextTick >= 0 && caughtUp < MAX_CATCH_UP_TICKS) {
+                lagListener.accept(System.nanoTime() - nextTick);
+                if (now - nextTick >= tickPeriod) {
+                    lateTicks++;
+                }
+                tick.run();
+                ticks++;
+                caughtUp++;
+                nextTick += tickPeriod;
+            }
+            if (now - nextTick >= 0) {
+                // Too far behind to catch up, skip to the present instead of spiralling
+                long behind = (now - nextTick) / tickPeriod + 1;
+                droppedTicks += behind;
+                nextTick += behind * tickPeriod;
+            }
+
+            if (now - nextRender >= 0) {
+                render.run();
+                frames++;
+                nextRender = Math.max(nextRender + renderPeriodNanos, now);
+            }
+
+            long wait = Math.min(nextTick, nextRender) - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+            }
+        }
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getLateTicks() {
+        return lateTicks;
+    }
+
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    @Override
+    public String toString() {
+        return "ticks=" + ticks + " late=" + lateTicks + " dropped=" + droppedTicks + " frames=" + frames;
+    }
+}
@@ -0,0 +1,115 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue of blast spawns, any number of producers and one consumer.
+ * <p>
+ * Every slot carries a sequence number telling whose turn it is: {@code position} when it is free
+ * for the producer claiming that position, {@code position + 1} once the spawn is written. A
+ * producer claims a position with one compare-and-set on the tail and publishes the slot with a
+ * release store, so producers never block each other or the consumer.
+ */
+public class SpawnRing {
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final int[] xs;
+    private final int[] ys;
+    private final float[] rs;
+    private final float[] yields;
+
+    private final AtomicLong tail = new AtomicLong();
+    // Only touched by the consumer
+    private long head;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public SpawnRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        mask = size - 1;
+        sequences = new AtomicLongArray(size);
+        xs = new int[size];
+        ys = new int[size];
+        rs = new float[size];
+        yields = new float[size];
+        for (int n = 0; n < size; n++) {
+            sequences.set(n, n);
+        }
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Queues a spawn, or returns false when the ring is full.
+     */
+    public boolean offer(int x, int y, float r, float yield) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long lap = sequences.getAcquire(slot) - position;
+            if (lap == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    xs[slot] = x;
+                    ys[slot] = y;
+                    rs[slot] = r;
+                    yields[slot] = yield;
+                    sequences.setRelease(slot, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (lap < 0) {
+                // The slot still holds a spawn from the previous lap
+                return false;
+            } else {
+                // Another producer took this position
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Moves up to {@code max} queued spawns into the arrays from {@code offset} on, oldest first,
+     * and returns how many. Consumer only.
+     */
+    public int drainTo(int[] x, int[] y, float[] r, float[] yield, int offset, int max) {
+        int count = 0;
+        while (count < max) {
+            int slot = (int) head & mask;
+            if (sequences.getAcquire(slot) != head + 1) {
+                // Empty, or the producer of this slot has not finished writing it
+                break;
+            }
+            x[offset + count] = xs[slot];
+            y[offset + count] = ys[slot];
+            r[offset + count] = rs[slot];
+            yield[offset + count] = yields[slot];
+            sequences.setRelease(slot, head + mask + 1);
+            head++;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Drops every queued spawn. Consumer only.
+     */
+    public void clear() {
+        while (true) {
+            int slot = (int) head & mask;
+            if (sequences.getAcquire(slot) != head + 1) {
+                return;
+            }
+            sequences.setRelease(slot, head + mask + 1);
+            head++;
+        }
+    }
+
+    /**
+     * Spawns queued right now, approximate while producers are running. Consumer only.
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+}
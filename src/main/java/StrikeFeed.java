@@ -0,0 +1,269 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays back a strike log, one strike per line: {@code timestamp x y [yield]}, the timestamp in
+ * milliseconds, the fields separated by spaces, tabs or commas. Blank lines and lines starting with
+ * {@code #} are skipped, and so are malformed ones, which are only counted.
+ * <p>
+ * The log is read from a channel a buffer at a time and parsed straight from the bytes, so a log of
+ * any length, or a socket that never closes, takes the same little memory and allocates nothing per
+ * line. The first strike goes out right away and every later one when its distance in time from the
+ * previous one, divided by the playback speed, has passed. Strikes that are due go out back to back,
+ * the feed only parks when the next one is ahead of the clock. A strike earlier than the previous one
+ * goes out right away.
+ */
+public class StrikeFeed implements Runnable {
+    /**
+     * Receives the strikes, on the feed's thread.
+     */
+    public interface Target {
+        void strike(int x, int y, float yield);
+    }
+
+    private static final int BUFFER_BYTES = 1 << 16;
+    // Closer than this the feed spins on the clock instead of parking, which would overshoot
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final ReadableByteChannel channel;
+    private final Target target;
+    private volatile double speed;
+
+    private volatile long strikes;
+    private volatile long malformed;
+    private volatile long bytes;
+    private volatile long lagNanos;
+    private volatile IOException failure;
+
+    // Playback clock, feed thread only
+    private boolean started;
+    private double lastTimestamp;
+    private long lastDue;
+    // Parser position inside the buffer
+    private int pos;
+
+    public StrikeFeed(ReadableByteChannel channel, double speed, Target target) {
+        this.channel = channel;
+        this.target = target;
+        setSpeed(speed);
+    }
+
+    /**
+     * Opens {@code source}: {@code -} for stdin, {@code tcp://host:port} for a socket to connect
+     * to, anything else for a file.
+     */
+    public static ReadableByteChannel open(String source) throws IOException {
+        if (source.equals("-")) {
+            return Channels.newChannel(System.in);
+        }
+        if (source.startsWith("tcp://")) {
+            URI uri = URI.create(source);
+            if (uri.getHost() == null || uri.getPort() < 0) {
+                throw new IOException("Expected tcp://host:port, got " + source);
+            }
+            return SocketChannel.open(new InetSocketAddress(uri.getHost(), uri.getPort()));
+        }
+        return FileChannel.open(Paths.get(source), StandardOpenOption.READ);
+    }
+
+    /**
+     * Log milliseconds played per real millisecond, {@link Double#POSITIVE_INFINITY} plays as fast
+     * as the target takes them. Applies from the next strike on.
+     */
+    public void setSpeed(double speed) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Playback speed must be positive: " + speed);
+        }
+        this.speed = speed;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Reads and plays the log until it ends, reading fails or the thread is interrupted, then closes
+     * the channel. A failed read is kept for {@link #getFailure}.
+     */
+    @Override
+    public void run() {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        byte[] data = buffer.array();
+        // Set while the rest of a line too long for the buffer is thrown away
+        boolean skipping = false;
+        try (ReadableByteChannel in = channel) {
+            while (!Thread.currentThread().isInterrupted()) {
+                int read = in.read(buffer);
+                int end = buffer.position();
+                int start = 0;
+                for (int n = 0; n < end; n++) {
+                    if (data[n] == '\n') {
+                        if (!skipping) {
+                            line(data, start, n);
+                        }
+                        skipping = false;
+                        start = n + 1;
+                    }
+                }
+                if (read > 0) {
+                    bytes += read;
+                }
+                if (read < 0) {
+                    if (start < end && !skipping) {
+                        line(data, start, end);
+                    }
+                    return;
+                }
+                if (start == 0 && end == data.length) {
+                    if (!skipping) {
+                        malformed++;
+                    }
+                    skipping = true;
+                    buffer.clear();
+                    continue;
+                }
+                // Keep the unfinished line for the next read
+                buffer.flip();
+                buffer.position(start);
+                buffer.compact();
+            }
+        } catch (IOException e) {
+            // Interrupting a read closes the channel, that is how a feed is stopped
+            if (!Thread.currentThread().isInterrupted()) {
+                failure = e;
+            }
+        }
+    }
+
+    public long getStrikes() {
+        return strikes;
+    }
+
+    public long getMalformed() {
+        return malformed;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Why reading the log stopped before its end, null when it ended or was stopped.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * How late the last strike went out, in nanoseconds after its time.
+     */
+    public long getLagNanos() {
+        return lagNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "strikes=" + strikes + " malformed=" + malformed + " bytes=" + bytes + " lag=" + lagNanos / 1000 + "us";
+    }
+
+    private void line(byte[] data, int from, int to) {
+        pos = from;
+        skipSeparators(data, to);
+        if (pos == to || data[pos] == '#') {
+            return;
+        }
+        double timestamp = number(data, to);
+        double x = number(data, to);
+        double y = number(data, to);
+        double yield = 1;
+        skipSeparators(data, to);
+        if (pos < to) {
+            yield = number(data, to);
+            skipSeparators(data, to);
+        }
+        if (Double.isNaN(timestamp) || Double.isNaN(x) || Double.isNaN(y) || !(yield > 0) || pos < to) {
+            malformed++;
+            return;
+        }
+        play(timestamp, (int) x, (int) y, (float) yield);
+    }
+
+    private void play(double timestamp, int x, int y, float yield) {
+        long now = System.nanoTime();
+        if (!started) {
+            started = true;
+            lastDue = now;
+            lastTimestamp = timestamp;
+        } else if (timestamp > lastTimestamp) {
+            lastDue += (long) ((timestamp - lastTimestamp) * 1e6 / speed);
+            lastTimestamp = timestamp;
+        }
+        long wait = lastDue - now;
+        while (wait > 0 && !Thread.currentThread().isInterrupted()) {
+            if (wait > SPIN_NANOS) {
+                LockSupport.parkNanos(this, wait - SPIN_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+            wait = lastDue - System.nanoTime();
+        }
+        lagNanos = -wait;
+        target.strike(x, y, yield);
+        strikes++;
+    }
+
+    private void skipSeparators(byte[] data, int to) {
+        while (pos < to && (data[pos] == ' ' || data[pos] == '\t' || data[pos] == ',' || data[pos] == '\r')) {
+            pos++;
+        }
+    }
+
+    /**
+     * Parses {@code [-]digits[.digits]} after any separators, NaN when there is none or it runs
+     * into anything but a separator.
+     */
+    private double number(byte[] data, int to) {
+        skipSeparators(data, to);
+        boolean negative = pos < to && data[pos] == '-';
+        if (negative) {
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; pos < to; pos++) {
+            int c = data[pos];
+            if (c >= '0' && c <= '9') {
+                // Digits past what a long holds no longer matter for a timestamp or a pixel
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits++;
+                    if (decimals >= 0) {
+                        decimals++;
+                    }
+                } else if (decimals < 0) {
+                    return Double.NaN;
+                }
+            } else if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0 || (pos < to && data[pos] != ' ' && data[pos] != '\t' && data[pos] != ',' && data[pos] != '\r')) {
+            return Double.NaN;
+        }
+        double value = decimals > 0 ? mantissa / Math.pow(10, decimals) : mantissa;
+        return negative ? -value : value;
+    }
+}
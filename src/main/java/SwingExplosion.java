@@ -1,16 +1,22 @@
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.filechooser.FileFilter;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
-import java.awt.image.Raster;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
-import java.util.ConcurrentModificationException;
+import java.util.Arrays;
 import java.util.Random;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 /**
  * Conway's game of life is a cellular automaton devised by the
@@ -18,43 +24,85 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  */
 public class SwingExplosion extends JFrame implements ActionListener, KeyListener {
     private static final Dimension DEFAULT_WINDOW_SIZE = new Dimension(1100, 850);
+    private static final Dimension MINIMUM_WINDOW_SIZE = new Dimension(400, 300);
+    // -Dexplosion.renderScale=S draws blasts at S times the board size and stretches them to it, 0.5 is a quarter of the pixels
+    private static final double RENDER_SCALE = Double.parseDouble(System.getProperty("explosion.renderScale", "1"));
+    // While the window is being resized the effect layer keeps its size, it follows once the size rested this long
+    private static final int RESIZE_SETTLE_MS = 200;
+    private static final int BOOM_SIZE = 80;
+    private static final int CROSSHAIR_SIZE = 50;
+    private static final int STATS_WIDTH = 560;
+    private static final Font STATS_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    private static final Color STATS_BACKDROP = new Color(0, 0, 0, 160);
 
     private JMenuBar mb_menu;
     private JMenu m_game, m_settings;
-    private JMenuItem mi_game_autofill, mi_game_play, mi_game_stop, mi_settings_browse_image, mi_settings_prop_speed, mi_settings_fog_height;
+    private JMenuItem mi_game_autofill, mi_game_play, mi_game_stop, mi_game_feed, mi_game_record, mi_settings_browse_image, mi_settings_open_map, mi_settings_prop_speed, mi_settings_fog_height, mi_settings_lifetime, mi_settings_render_scale;
 
     private int i_movesPerSecond = 60;
-
-    private int max_iter = 200;
-    private double blast_increment = 0.6;
-    private int R = 0;
-    private double max_R = (R + max_iter * blast_increment);
+    private int i_framesPerSecond = 60;
+
+    // Read once per frame and tick, replaced whole by changeSettings
+    private volatile Settings settings = new Settings(1.0, 1.0, 200, 0.6, 0, RENDER_SCALE, null);
+    // The last settings asked for, ahead of the published ones while a change is being prepared. EDT only.
+    private Settings requestedSettings;
+    private final ExecutorService settingsUpdater = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "settings");
+        t.setDaemon(true);
+        return t;
+    });
 
     private GameBoard gb_gameBoard;
+    private final RenderStats stats = new RenderStats();
+    // F3 draws the render stats over the board
+    private volatile boolean b_showStats = false;
+    private SimulationLoop simulation;
     private Thread game;
-    private BufferedImage img;
-    private BufferedImage cloud_img;
-    private Raster rst;
-    private BufferedImage backgroundImage;
     private Image boomImage;
     private Image crosshairImage;
-    private BufferedImage boomBuffer;
     private final Random rand = new Random(48);
-
-    private File backgroundFile;
+    // -Dexplosion.raster=legacy switches back to the getRGB/setRGB path, F6 toggles it at runtime
+    private final boolean b_legacyRaster = "legacy".equals(System.getProperty("explosion.raster"));
+    private final ExplosionRenderer renderer = new ExplosionRenderer(rand, !b_legacyRaster);
+    // -Dexplosion.threads=N renders tiles on a pool of N threads, 0 keeps the single-threaded path.
+    // The tiles draw their own gas noise, so comparing with the legacy path turns them off.
+    private final int i_renderThreads = b_legacyRaster ? 0 : Integer.getInteger("explosion.threads", Runtime.getRuntime().availableProcessors());
+    // -Dexplosion.mergeDistance=N drops spawns within N pixels of a blast that just started, 0 keeps them all
+    private final int i_mergeDistance = Integer.getInteger("explosion.mergeDistance", 4);
+    // -Dexplosion.lod=N pins the detail of large blasts (0 full to 3 quarter), by default it adapts to
+    // -Dexplosion.frameBudgetMs, one frame period unless set
+    private final LevelOfDetail levelOfDetail = Integer.getInteger("explosion.lod", -1) >= 0
+            ? LevelOfDetail.fixed(Integer.getInteger("explosion.lod"))
+            : new LevelOfDetail(TimeUnit.MILLISECONDS.toNanos(Long.getLong("explosion.frameBudgetMs", 1000 / i_framesPerSecond)));
+
+    private final BackgroundCache backgrounds = new BackgroundCache();
+    // Set while a large map is open instead of a background, -Dexplosion.map=FILE opens one at start
+    private volatile MapViewport mapViewport;
+    // -Dexplosion.feed=FILE|-|tcp://host:port plays a strike log at start, -Dexplosion.feedSpeed=D that many times as fast
+    private final double feedSpeed = Double.parseDouble(System.getProperty("explosion.feedSpeed", "1"));
+    private Thread feedThread;
+    // Set while recording, -Dexplosion.record=FILE.avi|FILE.y4m records from the start
+    private volatile FrameRecorder recorder;
 
     private BufferedImage backBuffer;
 
-    double fogHeight = 1.0;
-    double propagationSpeed = 1.0;
-
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--headless")) {
+            HeadlessRenderer.main(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--scenarios")) {
+            ScenarioRunner.main(args);
+            return;
+        }
+        // The board is a heavyweight Canvas, lightweight menus would open behind it
+        JPopupMenu.setDefaultLightWeightPopupEnabled(false);
         JFrame game = new SwingExplosion();
-        game.setResizable(false);
+        game.setResizable(true);
         game.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         game.setTitle("Explosions");
         game.setSize(DEFAULT_WINDOW_SIZE);
-        game.setMinimumSize(DEFAULT_WINDOW_SIZE);
+        game.setMinimumSize(MINIMUM_WINDOW_SIZE);
         game.setLocation((Toolkit.getDefaultToolkit().getScreenSize().width - game.getWidth()) / 2,
                 (Toolkit.getDefaultToolkit().getScreenSize().height - game.getHeight()) / 2);
         game.setVisible(true);
@@ -72,29 +120,64 @@ public class SwingExplosion extends JFrame implements ActionListener, KeyListene
         mi_game_stop = new JMenuItem("Stop");
         mi_game_stop.setEnabled(false);
         mi_game_stop.addActionListener(this);
+        mi_game_feed = new JMenuItem("Play strike log");
+        mi_game_feed.addActionListener(this);
+        mi_game_record = new JMenuItem("Start recording");
+        mi_game_record.addActionListener(this);
         mi_settings_browse_image = new JMenuItem("Browse for background");
         mi_settings_browse_image.addActionListener(this);
+        mi_settings_open_map = new JMenuItem("Open large map");
+        mi_settings_open_map.addActionListener(this);
         mi_settings_fog_height = new JMenuItem("Change explosion fog height");
         mi_settings_fog_height.addActionListener(this);
         mi_settings_prop_speed = new JMenuItem("Set explosion propagation speed");
         mi_settings_prop_speed.addActionListener(this);
+        mi_settings_lifetime = new JMenuItem("Set explosion lifetime");
+        mi_settings_lifetime.addActionListener(this);
+        mi_settings_render_scale = new JMenuItem("Set render scale");
+        mi_settings_render_scale.addActionListener(this);
         m_game.add(new JSeparator());
         m_game.add(mi_game_play);
         m_game.add(mi_game_stop);
+        m_game.add(mi_game_feed);
+        m_game.add(mi_game_record);
         m_settings.add(mi_settings_browse_image);
+        m_settings.add(mi_settings_open_map);
         m_settings.add(mi_settings_prop_speed);
         m_settings.add(mi_settings_fog_height);
+        m_settings.add(mi_settings_lifetime);
+        m_settings.add(mi_settings_render_scale);
+
+        if (i_renderThreads > 0) {
+            renderer.setTileRasterizer(new TileRasterizer(new ForkJoinPool(i_renderThreads, stats.workerThreadFactory(), null, false),
+                    TileRasterizer.DEFAULT_TILE_SIZE));
+        }
 
         gb_gameBoard = new GameBoard();
         add(gb_gameBoard);
+        requestedSettings = settings;
+        simulation = new SimulationLoop(gb_gameBoard::step, gb_gameBoard::renderIfBusy, movesPerSecond(settings), i_framesPerSecond);
+        simulation.setTickLagListener(stats::recordTickLag);
+        stats.setSimulation(simulation);
+        stats.setBackgroundCache(backgrounds);
+        stats.register();
         addKeyListener(this);
+        if (System.getProperty("explosion.map") != null) {
+            openMap(new File(System.getProperty("explosion.map")));
+        }
+        if (System.getProperty("explosion.record") != null) {
+            startRecording(new File(System.getProperty("explosion.record")));
+        }
+        if (System.getProperty("explosion.feed") != null) {
+            playFeed(System.getProperty("explosion.feed"));
+        }
     }
 
     public void setGameBeingPlayed(boolean isBeingPlayed) {
         if (isBeingPlayed) {
             mi_game_play.setEnabled(false);
             mi_game_stop.setEnabled(true);
-            game = new Thread(gb_gameBoard);
+            game = new Thread(simulation, "simulation");
             game.start();
         } else {
             mi_game_play.setEnabled(true);
@@ -103,58 +186,93 @@ public class SwingExplosion extends JFrame implements ActionListener, KeyListene
         }
     }
 
+    private double movesPerSecond(Settings settings) {
+        return (i_movesPerSecond + settings.getPropagationSpeed() * i_movesPerSecond) / 2;
+    }
+
+    /**
+     * Publishes the settings {@code change} makes of the last ones asked for. The render and
+     * simulation threads take them at their next frame and tick. When they need other blast tables,
+     * those are built on the settings thread first, and the board keeps drawing with the old settings
+     * until they are ready. EDT only.
+     */
+    private void changeSettings(UnaryOperator<Settings> change) {
+        Settings previous = requestedSettings;
+        Settings next = change.apply(previous);
+        requestedSettings = next;
+        settingsUpdater.execute(() -> {
+            if (Double.compare(next.getLayerMaxR(), previous.getLayerMaxR()) != 0 || Double.compare(next.getFogHeight(), previous.getFogHeight()) != 0) {
+                renderer.prepare(next.getLayerMaxR(), next.getFogHeight());
+            }
+            settings = next;
+            simulation.setTickRate(movesPerSecond(next));
+            gb_gameBoard.repaint();
+        });
+    }
+
+    /**
+     * Shows a small window to pick one of {@code options} in, every pick goes to {@code onPick}.
+     * It does not block the board, which goes on with the settings in force until a pick is published.
+     */
+    private void showChoice(String title, String label, Object[] options, Object selected, Consumer<Object> onPick) {
+        JDialog d_choice = new JDialog(this, title, false);
+        d_choice.setSize(400, 80);
+        d_choice.setLocationRelativeTo(this);
+        d_choice.setResizable(false);
+        JPanel p_choice = new JPanel();
+        p_choice.setOpaque(false);
+        d_choice.add(p_choice);
+        p_choice.add(new JLabel(label));
+        JComboBox<Object> cb_choice = new JComboBox<>(options);
+        cb_choice.setSelectedItem(selected);
+        cb_choice.addActionListener(e -> onPick.accept(cb_choice.getSelectedItem()));
+        p_choice.add(cb_choice);
+        d_choice.setVisible(true);
+    }
+
     @Override
     public void actionPerformed(ActionEvent ae) {
+        Object[] percentageOptions = {1.0, 0.9, 0.8, 0.7, 0.6, 0.5, 0.4, 0.3, 0.2, 0.1};
         if (ae.getSource().equals(mi_settings_fog_height)) {
-            final JFrame f_fog = new JFrame();
-            f_fog.setTitle("Normal Distribution Height");
-            f_fog.setSize(400, 80);
-            f_fog.setLocation((Toolkit.getDefaultToolkit().getScreenSize().width - f_fog.getWidth()) / 2,
-                    (Toolkit.getDefaultToolkit().getScreenSize().height - f_fog.getHeight()) / 2);
-            f_fog.setResizable(false);
-            JPanel p_fog = new JPanel();
-            p_fog.setOpaque(false);
-            f_fog.add(p_fog);
-            p_fog.add(new JLabel("Please select normal distribution height"));
-            Object[] percentageOptions = {1.0, 0.9, 0.8, 0.7, 0.6, 0.5, 0.4, 0.3, 0.2, 0.1};
-            final JComboBox cb_percent = new JComboBox(percentageOptions);
-            cb_percent.setSelectedItem(fogHeight);
-            p_fog.add(cb_percent);
-            f_fog.setVisible(true);
-            cb_percent.addActionListener(new ActionListener() {
-                @Override
-                public void actionPerformed(ActionEvent e) {
-                    fogHeight = (double) cb_percent.getSelectedItem();
-                }
-            });
-        } if (ae.getSource().equals(mi_settings_prop_speed)) {
-            final JFrame f_prop = new JFrame();
-            f_prop.setTitle("Propagation Speed");
-            f_prop.setSize(400, 80);
-            f_prop.setLocation((Toolkit.getDefaultToolkit().getScreenSize().width - f_prop.getWidth()) / 2,
-                    (Toolkit.getDefaultToolkit().getScreenSize().height - f_prop.getHeight()) / 2);
-            f_prop.setResizable(false);
-            JPanel p_prop = new JPanel();
-            p_prop.setOpaque(false);
-            f_prop.add(p_prop);
-            p_prop.add(new JLabel("Please select propagation speed"));
-            Object[] percentageOptions = {1.0, 0.9, 0.8, 0.7, 0.6, 0.5, 0.4, 0.3, 0.2, 0.1};
-            final JComboBox cb_percent = new JComboBox(percentageOptions);
-            cb_percent.setSelectedItem(propagationSpeed);
-            p_prop.add(cb_percent);
-            f_prop.setVisible(true);
-            cb_percent.addActionListener(new ActionListener() {
-                @Override
-                public void actionPerformed(ActionEvent e) {
-                    propagationSpeed = (double) cb_percent.getSelectedItem();
-                }
-            });
+            showChoice("Normal Distribution Height", "Please select normal distribution height", percentageOptions,
+                    requestedSettings.getFogHeight(), height -> changeSettings(s -> s.withFogHeight((double) height)));
+        } else if (ae.getSource().equals(mi_settings_prop_speed)) {
+            showChoice("Propagation Speed", "Please select propagation speed", percentageOptions,
+                    requestedSettings.getPropagationSpeed(), speed -> changeSettings(s -> s.withPropagationSpeed((double) speed)));
+        } else if (ae.getSource().equals(mi_settings_lifetime)) {
+            Object[] tickOptions = {100, 150, 200, 250, 300, 400};
+            showChoice("Explosion Lifetime", "Please select how many ticks explosions last", tickOptions,
+                    requestedSettings.getMaxIter(), ticks -> changeSettings(s -> s.withMaxIter((int) ticks)));
+        } else if (ae.getSource().equals(mi_settings_render_scale)) {
+            Object[] scaleOptions = {2.0, 1.0, 0.75, 0.5};
+            showChoice("Render Scale", "Please select the resolution blasts are drawn at", scaleOptions,
+                    requestedSettings.getRenderScale(), scale -> changeSettings(s -> s.withRenderScale((double) scale)));
         } else if (ae.getSource().equals(mi_game_play)) {
             setGameBeingPlayed(true);
         } else if (ae.getSource().equals(mi_game_stop)) {
             setGameBeingPlayed(false);
         } else if (ae.getSource().equals(mi_settings_browse_image)) {
             browseImage();
+        } else if (ae.getSource().equals(mi_game_feed)) {
+            JFileChooser fc = new JFileChooser();
+            if (fc.showOpenDialog(null) == JFileChooser.APPROVE_OPTION) {
+                playFeed(fc.getSelectedFile().getPath());
+            }
+        } else if (ae.getSource().equals(mi_game_record)) {
+            if (recorder != null) {
+                stopRecording();
+            } else {
+                JFileChooser fc = new JFileChooser();
+                fc.setSelectedFile(new File("explosions.avi"));
+                if (fc.showSaveDialog(null) == JFileChooser.APPROVE_OPTION) {
+                    startRecording(fc.getSelectedFile());
+                }
+            }
+        } else if (ae.getSource().equals(mi_settings_open_map)) {
+            JFileChooser fc = new JFileChooser();
+            if (fc.showOpenDialog(null) == JFileChooser.APPROVE_OPTION) {
+                openMap(fc.getSelectedFile());
+            }
         }
     }
 
@@ -165,8 +283,16 @@ public class SwingExplosion extends JFrame implements ActionListener, KeyListene
         try {
             if (res == JFileChooser.APPROVE_OPTION) {
                 File file = fc.getSelectedFile();
-                backgroundFile = file;
-                repaint();
+                // Decoding happens on the cache's thread, the old background stays up until it is done
+                backgrounds.load(file, image -> SwingUtilities.invokeLater(() -> {
+                    closeMap();
+                    changeSettings(s -> s.withBackground(image));
+                    gb_gameBoard.setBounds(0, 0, image.getWidth(), image.getHeight());
+                    gb_gameBoard.setSize(image.getWidth(), image.getHeight());
+                    repaint();
+                }), io -> SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null,
+                        "Could not read " + file.getName() + ": " + io.getMessage(), "Aborting...",
+                        JOptionPane.WARNING_MESSAGE)));
             } // Oops!
             else {
                 JOptionPane.showMessageDialog(null,
@@ -177,6 +303,100 @@ public class SwingExplosion extends JFrame implements ActionListener, KeyListene
         }
     }
 
+    /**
+     * Opens {@code file} as a large map, converting an image to tiles first. That can take a while
+     * for a big image, so it happens on its own thread and the board keeps running meanwhile.
+     */
+    private void openMap(File file) {
+        Thread loader = new Thread(() -> {
+            try {
+                MapTiles tiles = MapTiles.openOrConvert(file);
+                SwingUtilities.invokeLater(() -> {
+                    closeMap();
+                    gb_gameBoard.resetBoard();
+                    mapViewport = new MapViewport(tiles);
+                    gb_gameBoard.repaint();
+                });
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Map " + file + " failed: " + e);
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null,
+                        "Could not open " + file.getName() + ": " + e.getMessage(), "Aborting...",
+                        JOptionPane.WARNING_MESSAGE));
+            }
+        }, "map-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Plays the strike log at {@code source} on its own thread, stopping the one playing before.
+     * Strikes land where the log puts them, in map pixels while a map is open.
+     */
+    private void playFeed(String source) {
+        if (feedThread != null) {
+            feedThread.interrupt();
+        }
+        if (mi_game_play.isEnabled()) {
+            setGameBeingPlayed(true);
+        }
+        feedThread = new Thread(() -> {
+            try {
+                StrikeFeed feed = new StrikeFeed(StrikeFeed.open(source), feedSpeed, gb_gameBoard::addStrike);
+                feed.run();
+                if (feed.getFailure() != null) {
+                    throw feed.getFailure();
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Strike log " + source + " failed: " + e);
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null,
+                        "Could not play " + source + ": " + e.getMessage(), "Aborting...",
+                        JOptionPane.WARNING_MESSAGE));
+            }
+        }, "strike-feed");
+        feedThread.setDaemon(true);
+        feedThread.start();
+    }
+
+    /**
+     * Records every frame the board shows to {@code file}, Motion-JPEG AVI or raw Y4M by its extension.
+     */
+    private void startRecording(File file) {
+        FrameRecorder started = new FrameRecorder(file, i_framesPerSecond, crosshairImage, CROSSHAIR_SIZE);
+        started.setFailureListener(e -> SwingUtilities.invokeLater(() -> {
+            if (recorder == started) {
+                recorder = null;
+                mi_game_record.setText("Start recording");
+            }
+            JOptionPane.showMessageDialog(null, "Recording " + file.getName() + " failed: " + e.getMessage(), "Aborting...",
+                    JOptionPane.WARNING_MESSAGE);
+        }));
+        recorder = started;
+        mi_game_record.setText("Stop recording");
+        gb_gameBoard.repaint();
+    }
+
+    private void stopRecording() {
+        FrameRecorder stopped = recorder;
+        recorder = null;
+        mi_game_record.setText("Start recording");
+        // The rest of the queue is written on the recorder's thread, which reports when the file is done
+        stopped.close();
+    }
+
+    private void closeMap() {
+        MapViewport map = mapViewport;
+        if (map == null) {
+            return;
+        }
+        mapViewport = null;
+        gb_gameBoard.resetBoard();
+        try {
+            map.getTiles().close();
+        } catch (IOException e) {
+            System.err.println("Closing the map failed: " + e);
+        }
+    }
+
     public class ImageFileFilter extends FileFilter implements java.io.FileFilter {
         public boolean accept(File f) {
             if (f.getName().toLowerCase().endsWith(".jpeg")) return true;
@@ -198,6 +418,34 @@ public class SwingExplosion extends JFrame implements ActionListener, KeyListene
         if (e.getKeyCode() == KeyEvent.VK_F5) {
             gb_gameBoard.addPoint(rand.nextInt(gb_gameBoard.getWidth()), rand.nextInt(gb_gameBoard.getHeight()));
         }
+        if (e.getKeyCode() == KeyEvent.VK_F3) {
+            b_showStats = !b_showStats;
+            gb_gameBoard.repaint();
+        }
+        MapViewport map = mapViewport;
+        if (map != null) {
+            // Arrows pan by an eighth of the board, + and - zoom around its center
+            int stepX = gb_gameBoard.getWidth() / 8;
+            int stepY = gb_gameBoard.getHeight() / 8;
+            switch (e.getKeyCode()) {
+                case KeyEvent.VK_LEFT: map.pan(-stepX, 0); break;
+                case KeyEvent.VK_RIGHT: map.pan(stepX, 0); break;
+                case KeyEvent.VK_UP: map.pan(0, -stepY); break;
+                case KeyEvent.VK_DOWN: map.pan(0, stepY); break;
+                case KeyEvent.VK_EQUALS:
+                case KeyEvent.VK_ADD: map.zoomAt(2, gb_gameBoard.getWidth() / 2, gb_gameBoard.getHeight() / 2); break;
+                case KeyEvent.VK_MINUS:
+                case KeyEvent.VK_SUBTRACT: map.zoomAt(0.5, gb_gameBoard.getWidth() / 2, gb_gameBoard.getHeight() / 2); break;
+                default: break;
+            }
+            gb_gameBoard.repaint();
+        }
+        if (e.getKeyCode() == KeyEvent.VK_F6) {
+            // Only the single-threaded direct path draws the same noise as the legacy one
+            renderer.setTileRasterizer(null);
+            renderer.setDirectRaster(!renderer.isDirectRaster());
+            setTitle(renderer.isDirectRaster() ? "Explosions" : "Explosions (legacy raster)");
+        }
         if (mi_game_play.isEnabled()) {
             setGameBeingPlayed(true);
         }
@@ -211,68 +459,99 @@ public class SwingExplosion extends JFrame implements ActionListener, KeyListene
     public void keyTyped(KeyEvent e) {
     }
 
-    private class GameBoard extends JPanel implements ComponentListener, MouseListener, MouseMotionListener, Runnable {
-        private class Blast {
-            private int x;
-            private int y;
-            private double r;
-
-            Blast(int x, int y, double r) {
-                this.x = x;
-                this.y = y;
-                this.r = r;
-            }
-
-            public int getX() {
-                return x;
-            }
-
-            public void setX(int x) {
-                this.x = x;
-            }
-
-            public int getY() {
-                return y;
-            }
-
-            public void setY(int y) {
-                this.y = y;
-            }
-
-            public int getR() {
-                return (int) r;
-            }
-
-            public void setR(double r) {
-                this.r = r;
-            }
-
-            public void addR(double r) {
-                this.r += r;
-            }
-        }
-
+    /**
+     * The board draws itself: frames are put together by a {@link Compositor} and shown through
+     * a page flipping {@link BufferStrategy}, from the simulation thread while it runs and from
+     * paint events otherwise.
+     */
+    private class GameBoard extends Canvas implements ComponentListener, MouseListener, MouseMotionListener, MouseWheelListener {
         private Dimension d_gameBoardSize = null;
-        private final ConcurrentLinkedQueue<Blast> blasts = new ConcurrentLinkedQueue<>();
+        private final SimulationEngine engine = new SimulationEngine(new BlastStore(64), settings.getMaxR(),
+                settings.getBlastIncrement(), settings.getSpawnR());
+        private final BlastStore blasts = engine.getBlasts();
+        private final Compositor compositor = new Compositor();
+        private BufferStrategy strategy;
+        private BufferedImage crosshairSprite;
+        // Whether the last frame showed anything, the next one has to run once more to erase it
+        private volatile boolean b_lastFrameBusy = true;
+        // Blasts drawn in the current frame, reused between frames
+        private int[] frameXs = new int[64];
+        private int[] frameYs = new int[64];
+        private int[] frameRs = new int[64];
+        private int[] crosshairXs = new int[16];
+        private int[] crosshairYs = new int[16];
+        private int crosshairCount;
+        // What compose draws: the background and the zoom of the frame last rendered
+        private BufferedImage frameBackground;
+        private double frameZoom = 1;
+        // Time compose spent drawing the background this frame, every time it ran
+        private long composeBackgroundNanos;
+        // Effect layer pixels per board pixel in the frame last rendered
+        private double frameEffectScale = 1;
+        // What the blasts of the frame last rendered covered, for the compositor and the recorder
+        private final Rectangle frameDrawn = new Rectangle();
+        // The background and boom sprite at the render scale, made again when either changes
+        private BufferedImage scaledBackground;
+        private BufferedImage scaledBackgroundSource;
+        private Image scaledBoom;
+        private double scaledScale = Double.NaN;
+        // When the board size last changed, and a repaint once it rested
+        private volatile long resizedNanos;
+        private final javax.swing.Timer settleTimer = new javax.swing.Timer(RESIZE_SETTLE_MS, e -> repaint());
+        // Last point of a right button drag, which pans the map
+        private Point panFrom;
 
         public GameBoard() {
             addComponentListener(this);
             addMouseListener(this);
             addMouseMotionListener(this);
-
-            boomImage = Toolkit.getDefaultToolkit().getImage(getClass().getResource("cotton.png")).getScaledInstance(80, 80, 0);
-            crosshairImage = Toolkit.getDefaultToolkit().getImage(getClass().getResource("crosshair.png")).getScaledInstance(50, 50, 0);
+            addMouseWheelListener(this);
+            // Keys go to the frame
+            setFocusable(false);
+            settleTimer.setRepeats(false);
+            blasts.setMergeDistance(i_mergeDistance);
+            stats.setBlastStore(blasts);
+
+            // Scaled once here instead of going through getScaledInstance on every draw
+            try {
+                boomImage = Compositor.sprite(getClass().getResource("cotton.png"), BOOM_SIZE);
+                crosshairSprite = Compositor.sprite(getClass().getResource("crosshair.png"), CROSSHAIR_SIZE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            crosshairImage = crosshairSprite;
 
             ImageIcon ic = new ImageIcon(getClass().getResource("background.png"));
-            backgroundImage = new BufferedImage(ic.getIconWidth(), ic.getIconHeight(), BufferedImage.TYPE_INT_ARGB);
-            Graphics g1 = backgroundImage.getGraphics();
+            BufferedImage background = new BufferedImage(ic.getIconWidth(), ic.getIconHeight(), BufferedImage.TYPE_INT_ARGB);
+            Graphics g1 = background.getGraphics();
             ic.paintIcon(null, g1, 0, 0);
             g1.dispose();
+            settings = settings.withBackground(background);
         }
 
+        /**
+         * Queues a blast at board pixel ({@code x}, {@code y}). While the simulation runs it joins at
+         * the next tick and shows up with the next frame, so a burst of mouse events costs no extra frames.
+         */
         public void addPoint(int x, int y) {
-            blasts.add(new Blast(x, y, R));
-            repaint();
+            MapViewport map = mapViewport;
+            if (map != null) {
+                engine.spawn(map.toMapX(x), map.toMapY(y));
+            } else {
+                engine.spawn(x, y);
+            }
+            if (!isSimulating() && blasts.drain() > 0) {
+                // Nobody ticks, publish the crosshair right away. Repaints coalesce into one frame.
+                repaint();
+            }
+        }
+
+        /**
+         * Queues a blast of yield {@code yield} at ({@code x}, {@code y}) in blast coordinates, map
+         * pixels while a map is open. Safe from any thread, it joins at the next tick.
+         */
+        public void addStrike(int x, int y, float yield) {
+            engine.spawn(x, y, yield);
         }
 
         public void addPoint(MouseEvent me) {
@@ -291,290 +570,258 @@ public class SwingExplosion extends JFrame implements ActionListener, KeyListene
             for (int i = 0; i < d_gameBoardSize.width; i++) {
                 for (int j = 0; j < d_gameBoardSize.height; j++) {
                     if (Math.random() * 100 < percent) {
-                        addPoint(i, j);
+                        MapViewport map = mapViewport;
+                        engine.spawn(map != null ? map.toMapX(i) : i, map != null ? map.toMapY(j) : j);
                     }
                 }
             }
-        }
-
-        @Override
-        public void paint(Graphics g) {
-            super.paintComponents(g);
-            try {
-                if (img == null) {
-                    img = new BufferedImage(d_gameBoardSize.width, d_gameBoardSize.height, BufferedImage.TYPE_INT_ARGB);
-                    rst = img.copyData(null);
-
-                    cloud_img = new BufferedImage(d_gameBoardSize.width, d_gameBoardSize.height, BufferedImage.TYPE_INT_ARGB);
-                    boomBuffer = new BufferedImage(d_gameBoardSize.width, d_gameBoardSize.height, BufferedImage.TYPE_INT_ARGB);
-                } else {
-                    img.setData(rst);
-                    boomBuffer.setData(rst);
-                }
-
-                try {
-                    if (backgroundFile != null) {
-                        backgroundImage = ImageIO.read(backgroundFile);
-                        gb_gameBoard.setBounds(0, 0, backgroundImage.getWidth(), backgroundImage.getHeight());
-                        gb_gameBoard.setSize(backgroundImage.getWidth(), backgroundImage.getHeight());
-                    }
-                } catch (IOException io) {
-
-                }
-
-                g.drawImage(backgroundImage, 0, 0, this);
-
-                for (Blast current : blasts) {
-                    if (current.getR() <= 0) {
-                        g.drawImage(crosshairImage, current.getX() - crosshairImage.getWidth(null) / 2, current.getY() - crosshairImage.getHeight(null) / 2, null);
-                    } else {
-                        Graphics gboom = boomBuffer.getGraphics();
-                        gboom.drawImage(boomImage, current.getX() - boomImage.getWidth(null) / 2, current.getY() - boomImage.getHeight(null) / 2, null);
-
-                        int left = current.getX() - current.getR();
-                        int right = current.getX() + current.getR();
-                        for (int i = left; i <= right; i++) {
-                            if (i < 0 || i >= img.getWidth()) continue;
-
-                            int top = current.getY() - current.getR();
-                            int bottom = current.getY() + current.getR();
-                            for (int j = top; j <= bottom; j++) {
-                                if (j < 0 || j >= img.getHeight()) continue;
-
-                                double hypotR = Math.hypot(i - current.getX(), j - current.getY());
-
-                                if (hypotR <= current.getR()) {
-                                    double z = Math.hypot(hypotR, current.getR());
-                                    double p = 20 * current.getR() / (z + 20 * current.getR()); // This adds curviture to the gas cloud
-
-                                    int di = current.getX() - i;
-                                    int dj = current.getY() - j;
-
-                                    double newdi = p * di;
-                                    double newdj = p * dj;
-
-                                    int newi = current.getX() - (int) newdi;
-                                    int newj = current.getY() - (int) newdj;
-
-                                    double baseline = 1;
-                                    double radiusPercent = (current.getR() + 0.01 * max_R) / max_R; // this adds 0.01 to max value of the ratio, to trim that frame later
-                                    double alphaPercent = (1 - Math.pow(2 * radiusPercent - 1, 2));
-                                    double alphaCloudPercent = (1 - Math.pow(2 * radiusPercent - 1, 4));
-
-                                    /* Trim values above 1 because of some Swing bug */
-                                    if (radiusPercent <= 1) {
-                                        if (0 <= i && i < d_gameBoardSize.getWidth() && 0 <= j && j < d_gameBoardSize.getHeight()) {
-                                            setCloudPixel(cloud_img, i, j, backgroundImage, alphaCloudPercent, current.getX(), current.getY(), current.getR());
-                                        }
-                                        if (hypotR <= current.getR() - 2) {
-                                            if (0 <= i && i < d_gameBoardSize.getWidth() && 0 <= j && j < d_gameBoardSize.getHeight()) {
-                                                if (0 <= newi && newi < d_gameBoardSize.getWidth() && 0 <= newj && newj < d_gameBoardSize.getHeight()) {
-                                                    setShockwavePixel(boomBuffer, img, i, j, backgroundImage, cloud_img, newi, newj, baseline * alphaPercent);
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                            gboom.dispose();
-                        }
-                    }
-                }
-                Graphics2D g2d = (Graphics2D) g;
-                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-                g.drawImage(img, 0, 0, null);
-                g.dispose();
-            } catch (ConcurrentModificationException cme) {
-                cme.printStackTrace();
+            if (!isSimulating()) {
+                blasts.drain();
+                repaint();
             }
         }
 
-
-        private void setCloudPixel(BufferedImage cloudBuffer, int i, int j, BufferedImage newBuffer, double alpha, int x, int y, int r) {
-            double a = Math.exp(-Math.pow(Math.pow(2 * (i - x) / (double) r, 2) + Math.pow(2 * (j - y) / (double) r, 2) - 2, 2));
-            int ah = (int) ((255  + 255 * fogHeight) / 2);
-            int white = argb(ah, 255, 255, 255);
-
-            int oldArgb = cloudBuffer.getRGB(i, j);
-
-            if (oldArgb == 0) {
-                cloudBuffer.setRGB(i, j, setAlphaPercent(setAlphaPercent(white, a), alpha));
-            } else {
-
-                int newArgb = mergeColors(cloudBuffer.getRGB(i, j), setAlphaPercent(white, a));
-
-                cloudBuffer.setRGB(i, j, setAlphaPercent(newArgb, alpha));
-            }
+        private boolean isSimulating() {
+            return game != null && game.isAlive();
         }
 
-        private void setShockwavePixel(BufferedImage boomBuffer, BufferedImage shockwaveBuffer, int i, int j, BufferedImage newBuffer, BufferedImage cloudBuffer, int newi, int newj, double alpha) {
-            int oldArgb = shockwaveBuffer.getRGB(i, j);
-
-            // Random noise emulates the particles of gas
-            int noisyinew = noisyIndex(newi, 0, newBuffer.getWidth() - 1);
-            int noisyjnew = noisyIndex(newj, 0, newBuffer.getHeight() - 1);
-
-            int w = Math.min(newBuffer.getWidth(), cloudBuffer.getWidth());
-            int h = Math.min(newBuffer.getHeight(), cloudBuffer.getHeight());
-
-            if (oldArgb == 0) {
-                int argb = mergeColors(boomBuffer.getRGB(noisyinew, noisyjnew), mergeBufferPixels(newBuffer, cloudBuffer, noisyinew, noisyjnew));
-                shockwaveBuffer.setRGB(i, j, setAlphaPercent(argb, alpha));
-            } else {
-                // Random noise emulates the particles of gas
-                int noisyiold = noisyIndex(i, 0, shockwaveBuffer.getWidth() - 1);
-                int noisyjold = noisyIndex(j, 0, shockwaveBuffer.getHeight() - 1);
-
-                int noisyOldArgb = gauss(noisyiold, noisyjold, shockwaveBuffer);
-                int newArgb = mergeBufferPixels(newBuffer, cloudBuffer, noisyinew, noisyjnew);
-
-                shockwaveBuffer.setRGB(i, j, setAlphaPercent(mergeColors(boomBuffer.getRGB(noisyinew, noisyjnew), avg2(noisyOldArgb, newArgb)), alpha));
-            }
+        @Override
+        public void addNotify() {
+            super.addNotify();
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            compositor.setGraphicsConfiguration(gc);
+            crosshairImage = Compositor.compatible(crosshairSprite, gc);
         }
 
-
-        private int noisyIndex(int index, int minIndex, int maxIndex) {
-            int randi = rand.nextInt(2) - 1;
-            //if (randi < -1) randi = 0;
-            int noisyi = index + randi;
-
-            if (noisyi < minIndex || noisyi > maxIndex) {
-                noisyi = index;
-            }
-
-            return noisyi;
+        @Override
+        public void update(Graphics g) {
+            // The frame covers the whole board, clearing it first would only flicker
+            paint(g);
         }
 
-        int mergeColors(int backgroundColor, int foregroundColor) {
-            float ab = getAlpha(backgroundColor) / 255f;
-            float af = getAlpha(foregroundColor) / 255f;
-
-            if (ab == 0 && af == 0) {
-                return 0;
-            }
-
-            float ap = ab + af;
-
-            float factorb = ab / ap;
-            float factorf = af / ap;
-
-            int br = ((backgroundColor >> 16) & 255);
-            int bg = ((backgroundColor >> 8) & 255);
-            int bb = (backgroundColor & 255);
-
-            int fr = ((foregroundColor >> 16) & 255);
-            int fg = ((foregroundColor >> 8) & 255);
-            int fb = (foregroundColor & 255);
-
-            int a = (int) (getAlpha(backgroundColor) * factorb + getAlpha(foregroundColor) * factorf);
-            int r = (int) (br * factorb + fr * factorf);
-            int g = (int) (bg * factorb + fg * factorf);
-            int b = (int) (bb * factorb + fb * factorf);
-            return (((int) a & 0xFF) << 24) |
-                    (((int) r & 0xFF) << 16) |
-                    (((int) g & 0xFF) << 8) |
-                    (((int) b & 0xFF));
+        @Override
+        public void paint(Graphics g) {
+            render();
         }
 
-        int mergeBufferPixels(BufferedImage b1, BufferedImage b2, int i, int j) {
-            int w = Math.min(b1.getWidth(), b2.getWidth());
-            int h = Math.min(b1.getHeight(), b2.getHeight());
-            if (0 <= i && i < w && 0 <= j && j < h) {
-                return mergeColors(b1.getRGB(i, j), b2.getRGB(i, j));
+        /**
+         * Renders the blasts and shows the frame.
+         */
+        public synchronized void render() {
+            if (d_gameBoardSize == null || !isDisplayable()) {
+                return;
+            }
+            if (strategy == null) {
+                strategy = createStrategy();
+            }
+            long allocated = stats.allocatedBytes();
+            long start = System.nanoTime();
+            // One snapshot for the whole frame, a change published meanwhile waits for the next
+            Settings frame = settings;
+            // Without a map the layer is the board, with one it is the part of the map in view
+            int layerWidth = d_gameBoardSize.width;
+            int layerHeight = d_gameBoardSize.height;
+            int originX = 0;
+            int originY = 0;
+            frameBackground = frame.getBackground();
+            frameZoom = 1;
+            // A map brings its own resolution, the render scale is for the board
+            double scale = 1;
+            BufferedImage layerBackground = frameBackground;
+            Image boom = boomImage;
+            MapViewport map = mapViewport;
+            if (map != null) {
+                synchronized (map) {
+                    map.setBoardSize(d_gameBoardSize.width, d_gameBoardSize.height);
+                    layerWidth = map.getLayerWidth();
+                    layerHeight = map.getLayerHeight();
+                    originX = map.getOriginX();
+                    originY = map.getOriginY();
+                    frameZoom = map.getZoom();
+                    frameBackground = map.background();
+                    layerBackground = frameBackground;
+                }
+            } else {
+                // Blasts are only drawn where there is background
+                layerWidth = Math.min(layerWidth, frameBackground.getWidth());
+                layerHeight = Math.min(layerHeight, frameBackground.getHeight());
+                scale = frame.getRenderScale();
+                if (scale != 1) {
+                    layerWidth = Math.max(1, (int) Math.ceil(layerWidth * scale));
+                    layerHeight = Math.max(1, (int) Math.ceil(layerHeight * scale));
+                    layerBackground = scaledBackground(frameBackground, scale);
+                    boom = scaledBoom;
+                }
+                BufferedImage layer = renderer.getImage();
+                if (layer != null && System.nanoTime() - resizedNanos < TimeUnit.MILLISECONDS.toNanos(RESIZE_SETTLE_MS)) {
+                    // Mid-resize: keep drawing into the layer there is instead of making one every frame
+                    layerWidth = Math.min(layer.getWidth(), layerBackground.getWidth());
+                    layerHeight = Math.min(layer.getHeight(), layerBackground.getHeight());
+                }
             }
-            return (w == b1.getWidth()) ? b1.getRGB(i, j) : b2.getRGB(i, j);
-        }
+            frameEffectScale = scale;
+            renderer.beginFrame(layerWidth, layerHeight, layerBackground, frame.getMaxR() * scale, frame.getFogHeight());
+            // What the layer shows, in the coordinates of the blasts
+            double viewWidth = layerWidth / scale;
+            double viewHeight = layerHeight / scale;
 
-            private int gauss ( int i, int j, BufferedImage bi){
-                double a = 0;
-                double r = 0;
-                double g = 0;
-                double b = 0;
-
-                double[][] gauss2d = {
-                        {1d / 16, 1d / 8, 1d / 16},
-                        {1d / 8, 1d / 4, 1d / 8},
-                        {1d / 16, 1d / 8, 1d / 16}
-                };
-
-                for (int x = 0; x <= 2; x++) {
-                    for (int y = 0; y <= 2; y++) {
-                        int xx = i - 1 + x;
-                        int yy = j - 1 + y;
-
-                        if (0 < xx & xx < bi.getWidth() && 0 < yy && yy < bi.getHeight()) {
-                            int argb = bi.getRGB(xx, yy);
-                            double k = gauss2d[x][y];
-                            a += k * ((argb >> 24) & 255);
-                            r += k * ((argb >> 16) & 255);
-                            g += k * ((argb >> 8) & 255);
-                            b += k * (argb & 255);
+            int count = 0;
+            crosshairCount = 0;
+            BlastStore.Snapshot snapshot = blasts.acquire();
+            try {
+                for (int n = 0; n < snapshot.size; n++) {
+                    int r = (int) snapshot.r[n];
+                    int x = snapshot.x[n] - originX;
+                    int y = snapshot.y[n] - originY;
+                    // Its boom sprite may still be sampled by blasts in view
+                    int reach = Math.max(r, Math.max(BOOM_SIZE, CROSSHAIR_SIZE) / 2 + 1);
+                    if (x + reach < 0 || y + reach < 0 || x - reach >= viewWidth || y - reach >= viewHeight) {
+                        // Out of view, none of its tiles need to be touched
+                        continue;
+                    }
+                    if (r <= 0) {
+                        if (crosshairCount == crosshairXs.length) {
+                            crosshairXs = Arrays.copyOf(crosshairXs, crosshairCount * 2);
+                            crosshairYs = Arrays.copyOf(crosshairYs, crosshairCount * 2);
                         }
+                        crosshairXs[crosshairCount] = x;
+                        crosshairYs[crosshairCount] = y;
+                        crosshairCount++;
+                    } else {
+                        if (count == frameXs.length) {
+                            frameXs = Arrays.copyOf(frameXs, count * 2);
+                            frameYs = Arrays.copyOf(frameYs, count * 2);
+                            frameRs = Arrays.copyOf(frameRs, count * 2);
+                        }
+                        frameXs[count] = (int) (x * scale);
+                        frameYs[count] = (int) (y * scale);
+                        frameRs[count] = Math.max(1, (int) (r * scale));
+                        count++;
                     }
                 }
+            } finally {
+                blasts.release(snapshot);
+            }
+            b_lastFrameBusy = snapshot.size > 0;
+            long setupDone = System.nanoTime();
+            renderer.setLevelOfDetail(levelOfDetail.getLevel());
+            renderer.drawBlasts(frameXs, frameYs, frameRs, count, boom);
+            renderer.getDrawnBounds(frameDrawn);
+            FrameRecorder recording = recorder;
+            if (recording != null) {
+                recording.capture(renderer.getImage(), frameDrawn, frameBackground, map != null ? map.getTiles() : null, originX, originY,
+                        frameZoom, frameEffectScale, d_gameBoardSize.width, d_gameBoardSize.height,
+                        crosshairXs, crosshairYs, crosshairCount);
+            }
+            long blastsDone = System.nanoTime();
+
+            compositor.setGraphicsConfiguration(getGraphicsConfiguration());
+            composeBackgroundNanos = 0;
+            do {
+                do {
+                    Graphics g = strategy.getDrawGraphics();
+                    try {
+                        compose(g);
+                    } finally {
+                        g.dispose();
+                    }
+                } while (strategy.contentsRestored());
+                strategy.show();
+            } while (strategy.contentsLost());
+            Toolkit.getDefaultToolkit().sync();
+
+            long blitDone = System.nanoTime();
+            stats.recordFrame(setupDone - start, composeBackgroundNanos, renderer.getLastCloudNanos(), renderer.getLastShockwaveNanos(),
+                    blitDone - blastsDone - composeBackgroundNanos, count, renderer.getLastPixels(), allocated < 0 ? -1 : stats.allocatedBytes() - allocated);
+            stats.recordLevelOfDetail(renderer.getLevelOfDetail());
+            levelOfDetail.update(blitDone - start);
+        }
 
-                return (((int) a & 0xFF) << 24) |
-                        (((int) r & 0xFF) << 16) |
-                        (((int) g & 0xFF) << 8) |
-                        (((int) b & 0xFF));
-            }
-
-            private int avg2 ( int argb1, int argb2){
-                double a = 0;
-                double r = 0;
-                double g = 0;
-                double b = 0;
-
-                a += ((argb1 >> 24) & 255);
-                r += ((argb1 >> 16) & 255);
-                g += ((argb1 >> 8) & 255);
-                b += (argb1 & 255);
-
-                a += ((argb2 >> 24) & 255);
-                r += ((argb2 >> 16) & 255);
-                g += ((argb2 >> 8) & 255);
-                b += (argb2 & 255);
-
-                return (((int) a / 2 & 0xFF) << 24) |
-                        (((int) r / 2 & 0xFF) << 16) |
-                        (((int) g / 2 & 0xFF) << 8) |
-                        (((int) b / 2 & 0xFF));
-            }
-
-            int argb ( int a, int r, int g, int b){
-                return (((int) a & 0xFF) << 24) |
-                        (((int) r & 0xFF) << 16) |
-                        (((int) g & 0xFF) << 8) |
-                        (((int) b & 0xFF));
+        /**
+         * Draws the layers of the current frame. May run more than once per frame when the
+         * buffers are lost, so it only composes and never renders.
+         */
+        private void compose(Graphics g) {
+            Graphics2D g2 = (Graphics2D) g;
+            // The window may be larger than the background
+            int coveredWidth = (int) (frameBackground.getWidth() * frameZoom);
+            int coveredHeight = (int) (frameBackground.getHeight() * frameZoom);
+            if (coveredWidth < getWidth() || coveredHeight < getHeight()) {
+                g.setColor(Color.BLACK);
+                g.fillRect(coveredWidth, 0, getWidth() - coveredWidth, getHeight());
+                g.fillRect(0, coveredHeight, coveredWidth, getHeight() - coveredHeight);
+            }
+            AffineTransform board = g2.getTransform();
+            if (frameZoom != 1) {
+                g2.scale(frameZoom, frameZoom);
+            }
+            long backgroundStart = System.nanoTime();
+            compositor.drawBackground(g, frameBackground);
+            composeBackgroundNanos += System.nanoTime() - backgroundStart;
+            for (int n = 0; n < crosshairCount; n++) {
+                g.drawImage(crosshairImage, crosshairXs[n] - CROSSHAIR_SIZE / 2, crosshairYs[n] - CROSSHAIR_SIZE / 2, null);
+            }
+            BufferedImage effect = renderer.getImage();
+            compositor.drawEffect(g, effect, renderer.getVersion(), frameDrawn, (int) Math.round(effect.getWidth() / frameEffectScale),
+                    (int) Math.round(effect.getHeight() / frameEffectScale));
+            g2.setTransform(board);
+            if (b_showStats) {
+                paintStats(g);
             }
+        }
 
-            int setAlpha ( int argb, int alpha){
-                int a = (alpha & 255);
-                int r = ((argb >> 16) & 255);
-                int g = ((argb >> 8) & 255);
-                int b = (argb & 255);
-
-                return (((int) a & 0xFF) << 24) |
-                        (((int) r & 0xFF) << 16) |
-                        (((int) g & 0xFF) << 8) |
-                        (((int) b & 0xFF));
+        /**
+         * {@code source} at {@code scale}, also making the boom sprite of that scale.
+         */
+        private BufferedImage scaledBackground(BufferedImage source, double scale) {
+            if (source != scaledBackgroundSource || scale != scaledScale) {
+                int width = Math.max(1, (int) Math.ceil(source.getWidth() * scale));
+                int height = Math.max(1, (int) Math.ceil(source.getHeight() * scale));
+                scaledBackground = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g = scaledBackground.createGraphics();
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(source, 0, 0, width, height, null);
+                g.dispose();
+                if (scale != scaledScale) {
+                    try {
+                        scaledBoom = Compositor.sprite(getClass().getResource("cotton.png"), Math.max(1, (int) Math.round(BOOM_SIZE * scale)));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                scaledBackgroundSource = source;
+                scaledScale = scale;
             }
+            return scaledBackground;
+        }
 
-            int setAlphaPercent ( int argb, double percent){
-                int a = ((argb >> 24) & 255);
-                double alpha = a * percent;
-
-                return setAlpha(argb, (int) alpha);
+        private BufferStrategy createStrategy() {
+            try {
+                createBufferStrategy(2, new BufferCapabilities(new ImageCapabilities(true), new ImageCapabilities(true),
+                        BufferCapabilities.FlipContents.UNDEFINED));
+            } catch (AWTException e) {
+                // No page flipping on this pipeline, blit the back buffer instead
+                createBufferStrategy(2);
             }
+            return getBufferStrategy();
+        }
 
-            int getAlpha ( int argb){
-                return (argb >> 24) & 255;
+        private void paintStats(Graphics g) {
+            String[] lines = stats.overlayLines();
+            g.setFont(STATS_FONT);
+            g.setColor(STATS_BACKDROP);
+            g.fillRect(0, 0, STATS_WIDTH, lines.length * 14 + 8);
+            g.setColor(Color.WHITE);
+            for (int n = 0; n < lines.length; n++) {
+                g.drawString(lines[n], 6, 16 + n * 14);
             }
+        }
 
             @Override
             public void componentResized (ComponentEvent e){
                 d_gameBoardSize = new Dimension(getWidth(), getHeight());
+                resizedNanos = System.nanoTime();
+                settleTimer.restart();
             }
 
             @Override
@@ -595,10 +842,17 @@ public class SwingExplosion extends JFrame implements ActionListener, KeyListene
 
             @Override
             public void mousePressed (MouseEvent e){
+                if (mapViewport != null && SwingUtilities.isRightMouseButton(e)) {
+                    panFrom = e.getPoint();
+                }
             }
 
             @Override
             public void mouseReleased (MouseEvent e){
+                if (panFrom != null) {
+                    panFrom = null;
+                    return;
+                }
                 addPoint(e);
             }
 
@@ -612,30 +866,48 @@ public class SwingExplosion extends JFrame implements ActionListener, KeyListene
 
             @Override
             public void mouseDragged (MouseEvent e){
+                MapViewport map = mapViewport;
+                if (panFrom != null && map != null) {
+                    // The map follows the pointer
+                    map.pan(panFrom.x - e.getX(), panFrom.y - e.getY());
+                    panFrom = e.getPoint();
+                    repaint();
+                    return;
+                }
                 addPoint(e);
             }
 
             @Override
-            public void mouseMoved (MouseEvent e){
+            public void mouseWheelMoved (MouseWheelEvent e){
+                MapViewport map = mapViewport;
+                if (map != null) {
+                    map.zoomAt(Math.pow(2, -e.getPreciseWheelRotation() / 2), e.getX(), e.getY());
+                    repaint();
+                }
             }
 
             @Override
-            public void run () {
-                for (Blast current : blasts) {
-                    if (current.getR() <= max_R) {
-                        current.addR(blast_increment);
-                    } else {
-                        blasts.remove(current);
-                    }
-                }
-                repaint();
-                try {
-                    int moves = (i_movesPerSecond + ((int) propagationSpeed * i_movesPerSecond)) / 2;
-                    Thread.sleep(1000 / moves);
-                    run();
-                } catch (Exception ex) {
-                    ex.printStackTrace();
+            public void mouseMoved (MouseEvent e){
+            }
+
+            /**
+             * Renders a frame unless the board is idle and the last frame already showed that.
+             */
+            public void renderIfBusy () {
+                BlastStore.Snapshot snapshot = blasts.acquire();
+                boolean busy = snapshot.size > 0;
+                blasts.release(snapshot);
+                if (busy || b_lastFrameBusy || b_showStats) {
+                    render();
                 }
             }
+
+            /**
+             * Advances every blast by one simulation tick and drops the ones that burnt out.
+             */
+            public void step () {
+                Settings tick = settings;
+                engine.step(tick.getMaxR(), tick.getBlastIncrement());
+            }
         }
-    }
\ No newline at end of file
+    }
@@ -0,0 +1,320 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deterministic simulation of a fixed list of spawns, which can render any tick in any order.
+ * <p>
+ * The state at tick {@code t} only depends on {@code t}. Blasts are kept in spawn order and grow
+ * by the same float steps as {@link BlastStore}. The cloud layer gets exactly one cloud pass per
+ * tick, however many frames are rendered. Every blast has its own seed, mixed with the tick for
+ * its gas noise. The renderer is driven through {@link ExplosionRenderer#accumulateCloud} and
+ * {@link ExplosionRenderer#drawShockwaves}.
+ * <p>
+ * Every {@code keyframeInterval} ticks the blasts and the deflated cloud layer are saved as a
+ * {@link Keyframe}. To reach a tick, the timeline restores the closest keyframe at or before it and
+ * fast-forwards from there. Fast-forwarding runs only the cloud pass. Timelines that share a
+ * keyframe map can render different ranges of the same spawns in parallel, one timeline per thread.
+ */
+public class Timeline {
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 64;
+
+    /**
+     * Everything needed to resume the simulation at {@link #tick}.
+     */
+    public static final class Keyframe {
+        final long tick;
+        final int nextSpawn;
+        final int[] active;
+        final float[] r;
+        final byte[] cloud;
+
+        Keyframe(long tick, int nextSpawn, int[] active, float[] r, byte[] cloud) {
+            this.tick = tick;
+            this.nextSpawn = nextSpawn;
+            this.active = active;
+            this.r = r;
+            this.cloud = cloud;
+        }
+
+        /**
+         * Compressed size in bytes.
+         */
+        public int bytes() {
+            return cloud.length + active.length * 8;
+        }
+    }
+
+    private static final long SEED_MIX = 0x9E3779B97F4A7C15L;
+
+    // Spawns sorted by tick
+    private final int[] spawnX;
+    private final int[] spawnY;
+    private final long[] spawnTick;
+    private final long[] spawnSeed;
+    private final float spawnR;
+
+    private final ExplosionRenderer renderer;
+    private final int width;
+    private final int height;
+    private final BufferedImage background;
+    private final double max_R;
+    private final double blastIncrement;
+    private final double fogHeight;
+
+    private final int keyframeInterval;
+    private final ConcurrentSkipListMap<Long, Keyframe> keyframes;
+
+    // State at tick, -1 before the first advance
+    private long tick = -1;
+    private int nextSpawn;
+    private int[] active = new int[16];
+    private float[] r = new float[16];
+    private int activeCount;
+
+    // Blasts handed to the renderer, reused
+    private int[] drawXs = new int[16];
+    private int[] drawYs = new int[16];
+    private int[] drawRs = new int[16];
+    private long[] drawSeeds = new long[16];
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+    private byte[] scratch = new byte[0];
+    private long fastForwarded;
+
+    /**
+     * Spawn {@code n} appears at ({@code spawnX[n]}, {@code spawnY[n]}) on tick {@code spawnTick[n]}.
+     * {@code keyframes} may be shared with other timelines of the same spawns and settings, or be
+     * null to keep them to this one.
+     */
+    public Timeline(int[] spawnX, int[] spawnY, long[] spawnTick, float spawnR, long seed,
+                    int width, int height, BufferedImage background, double max_R, double blastIncrement, double fogHeight,
+                    int keyframeInterval, ConcurrentSkipListMap<Long, Keyframe> keyframes) {
+        Integer[] order = new Integer[spawnX.length];
+        for (int n = 0; n < order.length; n++) {
+            order[n] = n;
+        }
+        // Stable, so spawns of the same tick keep their script order
+        Arrays.sort(order, (a, b) -> Long.compare(spawnTick[a], spawnTick[b]));
+        this.spawnX = new int[order.length];
+        this.spawnY = new int[order.length];
+        this.spawnTick = new long[order.length];
+        this.spawnSeed = new long[order.length];
+        for (int n = 0; n < order.length; n++) {
+            this.spawnX[n] = spawnX[order[n]];
+            this.spawnY[n] = spawnY[order[n]];
+            this.spawnTick[n] = spawnTick[order[n]];
+            // The seed follows the spawn, not its position in the sorted list
+            this.spawnSeed[n] = mix(seed + order[n] * SEED_MIX);
+        }
+        this.spawnR = spawnR;
+
+        this.width = width;
+        this.height = height;
+        this.background = background;
+        this.max_R = max_R;
+        this.blastIncrement = blastIncrement;
+        this.fogHeight = fogHeight;
+        this.keyframeInterval = Math.max(1, keyframeInterval);
+        this.keyframes = keyframes != null ? keyframes : new ConcurrentSkipListMap<>();
+
+        renderer = new ExplosionRenderer(new Random(seed), true);
+        renderer.beginFrame(width, height, background, max_R, fogHeight);
+    }
+
+    /**
+     * Renders tick {@code target} into the renderer's image, after moving the simulation there.
+     */
+    public BufferedImage render(long target, Image boomImage) {
+        seek(target);
+        renderer.beginFrame(width, height, background, max_R, fogHeight);
+        int count = collect(false);
+        renderer.drawShockwaves(drawXs, drawYs, drawRs, drawSeeds, count, boomImage);
+        return renderer.getImage();
+    }
+
+    /**
+     * Moves the simulation to tick {@code target}: from the current tick if that is the closest
+     * starting point, otherwise from the closest keyframe or from the start.
+     */
+    public void seek(long target) {
+        if (target < 0) {
+            throw new IllegalArgumentException("Negative tick " + target);
+        }
+        Map.Entry<Long, Keyframe> keyframe = keyframes.floorEntry(target);
+        if (target < tick || (keyframe != null && keyframe.getKey() > tick)) {
+            if (keyframe != null) {
+                restore(keyframe.getValue());
+            } else {
+                reset();
+            }
+        }
+        while (tick < target) {
+            advance();
+            fastForwarded++;
+        }
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Ticks simulated to reach the requested ones, including the requested ones themselves.
+     */
+    public long getFastForwarded() {
+        return fastForwarded;
+    }
+
+    public ExplosionRenderer getRenderer() {
+        return renderer;
+    }
+
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    public int getActiveX(int n) {
+        return spawnX[active[n]];
+    }
+
+    public int getActiveY(int n) {
+        return spawnY[active[n]];
+    }
+
+    public float getActiveR(int n) {
+        return r[n];
+    }
+
+    private void reset() {
+        tick = -1;
+        nextSpawn = 0;
+        activeCount = 0;
+        renderer.getBuffers().clearCloud();
+    }
+
+    /**
+     * One tick: the blasts of the previous one grow, the new ones appear, and the cloud pass runs.
+     */
+    private void advance() {
+        int kept = 0;
+        for (int n = 0; n < activeCount; n++) {
+            if ((int) r[n] <= max_R) {
+                active[kept] = active[n];
+                r[kept] = (float) (r[n] + blastIncrement);
+                kept++;
+            }
+        }
+        activeCount = kept;
+        tick++;
+
+        for (; nextSpawn < spawnTick.length && spawnTick[nextSpawn] <= tick; nextSpawn++) {
+            if (activeCount == active.length) {
+                active = Arrays.copyOf(active, activeCount * 2);
+                r = Arrays.copyOf(r, activeCount * 2);
+            }
+            active[activeCount] = nextSpawn;
+            r[activeCount] = spawnR;
+            activeCount++;
+        }
+
+        renderer.accumulateCloud(drawXs, drawYs, drawRs, collect(true));
+        if (tick % keyframeInterval == 0 && !keyframes.containsKey(tick)) {
+            keyframes.putIfAbsent(tick, save());
+        }
+    }
+
+    /**
+     * Fills the draw arrays with the blasts that have a visible radius, and returns how many.
+     */
+    private int collect(boolean cloudOnly) {
+        if (drawXs.length < activeCount) {
+            int capacity = Math.max(activeCount, drawXs.length * 2);
+            drawXs = new int[capacity];
+            drawYs = new int[capacity];
+            drawRs = new int[capacity];
+            drawSeeds = new long[capacity];
+        }
+        int count = 0;
+        for (int n = 0; n < activeCount; n++) {
+            int radius = (int) r[n];
+            if (radius > 0) {
+                drawXs[count] = spawnX[active[n]];
+                drawYs[count] = spawnY[active[n]];
+                drawRs[count] = radius;
+                if (!cloudOnly) {
+                    drawSeeds[count] = mix(spawnSeed[active[n]] ^ tick * SEED_MIX);
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Keyframe save() {
+        FrameBuffers buffers = renderer.getBuffers();
+        int size = buffers.cloudBytes();
+        if (scratch.length < size) {
+            scratch = new byte[size];
+        }
+        buffers.writeCloud(ByteBuffer.wrap(scratch));
+        deflater.reset();
+        deflater.setInput(scratch, 0, size);
+        deflater.finish();
+        byte[] out = new byte[Math.max(64, size / 32)];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == out.length) {
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            length += deflater.deflate(out, length, out.length - length);
+        }
+        return new Keyframe(tick, nextSpawn, Arrays.copyOf(active, activeCount), Arrays.copyOf(r, activeCount), Arrays.copyOf(out, length));
+    }
+
+    private void restore(Keyframe keyframe) {
+        FrameBuffers buffers = renderer.getBuffers();
+        int size = buffers.cloudBytes();
+        if (scratch.length < size) {
+            scratch = new byte[size];
+        }
+        inflater.reset();
+        inflater.setInput(keyframe.cloud);
+        try {
+            int length = 0;
+            while (length < size && !inflater.finished()) {
+                length += inflater.inflate(scratch, length, size - length);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt keyframe at tick " + keyframe.tick, e);
+        }
+        buffers.readCloud(ByteBuffer.wrap(scratch, 0, size));
+
+        tick = keyframe.tick;
+        nextSpawn = keyframe.nextSpawn;
+        activeCount = keyframe.active.length;
+        if (active.length < activeCount) {
+            active = new int[activeCount];
+            r = new float[activeCount];
+        }
+        System.arraycopy(keyframe.active, 0, active, 0, activeCount);
+        System.arraycopy(keyframe.r, 0, r, 0, activeCount);
+    }
+
+    /**
+     * Finalizer of SplitMix64, spreads neighboring seeds over the whole range.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
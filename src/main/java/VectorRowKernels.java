@@ -0,0 +1,152 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link RowKernels} on {@code jdk.incubator.vector}, working on as many pixels at a time as the
+ * platform's preferred vector holds. Tails shorter than a vector go through the scalar kernels.
+ * <p>
+ * Every lane runs the same integer operations as the scalar code, so the results match bit for
+ * bit. The class is only loaded when the JVM runs with {@code --add-modules jdk.incubator.vector}.
+ * Instances keep scratch arrays and are not safe to share between threads.
+ */
+public class VectorRowKernels implements RowKernels {
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = INTS.length();
+
+    private final int[] indices = new int[LANES];
+    private int[] verticalRb = new int[0];
+    private int[] verticalAg = new int[0];
+
+    @Override
+    public void mergeColors(int[] background, int b, int[] foreground, int f, int[] dst, int d, int length) {
+        // Lane-wise conversions and divisions came out at half the speed of the scalar table lookups
+        for (int n = 0; n < length; n++) {
+            dst[d + n] = PixelKernels.mergeColors(background[b + n], foreground[f + n]);
+        }
+    }
+
+    @Override
+    public void avg2(int[] first, int a, int[] second, int b, int[] dst, int d, int length) {
+        int n = 0;
+        for (int upper = INTS.loopBound(length); n < upper; n += LANES) {
+            IntVector x = IntVector.fromArray(INTS, first, a + n);
+            IntVector y = IntVector.fromArray(INTS, second, b + n);
+            x.and(y).add(x.lanewise(VectorOperators.XOR, y).and(0xFEFEFEFE).lanewise(VectorOperators.LSHR, 1))
+                    .intoArray(dst, d + n);
+        }
+        for (; n < length; n++) {
+            dst[d + n] = PixelKernels.avg2(first[a + n], second[b + n]);
+        }
+    }
+
+    @Override
+    public void setAlpha(int[] src, int s, int[] lut, int[] dst, int d, int length) {
+        int n = 0;
+        for (int upper = INTS.loopBound(length); n < upper; n += LANES) {
+            IntVector argb = IntVector.fromArray(INTS, src, s + n);
+            argb.lanewise(VectorOperators.LSHR, 24).intoArray(indices, 0);
+            IntVector alpha = IntVector.fromArray(INTS, lut, 0, indices, 0);
+            alpha.lanewise(VectorOperators.LSHL, 24).or(argb.and(0xFFFFFF)).intoArray(dst, d + n);
+        }
+        for (; n < length; n++) {
+            dst[d + n] = PixelKernels.setAlpha(src[s + n], lut);
+        }
+    }
+
+    @Override
+    public void gauss(int[] src, int width, int height, int y, int[] dst, int d) {
+        if (verticalRb.length < width) {
+            verticalRb = new int[width];
+            verticalAg = new int[width];
+        }
+        int[] rb = verticalRb;
+        int[] ag = verticalAg;
+
+        boolean above = y - 1 > 0 && y - 1 < height;
+        boolean center = y > 0 && y < height;
+        boolean below = y + 1 > 0 && y + 1 < height;
+        int x = 0;
+        for (int upper = INTS.loopBound(width); x < upper; x += LANES) {
+            IntVector sumRb = IntVector.zero(INTS);
+            IntVector sumAg = IntVector.zero(INTS);
+            if (above) {
+                IntVector argb = IntVector.fromArray(INTS, src, (y - 1) * width + x);
+                sumRb = sumRb.add(argb.and(PixelKernels.RED_BLUE));
+                sumAg = sumAg.add(argb.lanewise(VectorOperators.LSHR, 8).and(PixelKernels.RED_BLUE));
+            }
+            if (center) {
+                IntVector argb = IntVector.fromArray(INTS, src, y * width + x);
+                sumRb = sumRb.add(argb.and(PixelKernels.RED_BLUE).lanewise(VectorOperators.LSHL, 1));
+                sumAg = sumAg.add(argb.lanewise(VectorOperators.LSHR, 8).and(PixelKernels.RED_BLUE).lanewise(VectorOperators.LSHL, 1));
+            }
+            if (below) {
+                IntVector argb = IntVector.fromArray(INTS, src, (y + 1) * width + x);
+                sumRb = sumRb.add(argb.and(PixelKernels.RED_BLUE));
+                sumAg = sumAg.add(argb.lanewise(VectorOperators.LSHR, 8).and(PixelKernels.RED_BLUE));
+            }
+            sumRb.intoArray(rb, x);
+            sumAg.intoArray(ag, x);
+        }
+        for (; x < width; x++) {
+            int sumRb = 0;
+            int sumAg = 0;
+            if (above) {
+                int argb = src[(y - 1) * width + x];
+                sumRb += argb & PixelKernels.RED_BLUE;
+                sumAg += (argb >>> 8) & PixelKernels.RED_BLUE;
+            }
+            if (center) {
+                int argb = src[y * width + x];
+                sumRb += (argb & PixelKernels.RED_BLUE) << 1;
+                sumAg += ((argb >>> 8) & PixelKernels.RED_BLUE) << 1;
+            }
+            if (below) {
+                int argb = src[(y + 1) * width + x];
+                sumRb += argb & PixelKernels.RED_BLUE;
+                sumAg += (argb >>> 8) & PixelKernels.RED_BLUE;
+            }
+            rb[x] = sumRb;
+            ag[x] = sumAg;
+        }
+        // Column 0 is left out of the blur like in the point kernel
+        rb[0] = 0;
+        ag[0] = 0;
+
+        dst[d] = horizontal(rb, ag, 0, width);
+        x = 1;
+        for (int upper = 1 + INTS.loopBound(Math.max(width - 2, 0)); x < upper; x += LANES) {
+            IntVector sumRb = IntVector.fromArray(INTS, rb, x).lanewise(VectorOperators.LSHL, 1)
+                    .add(IntVector.fromArray(INTS, rb, x - 1))
+                    .add(IntVector.fromArray(INTS, rb, x + 1));
+            IntVector sumAg = IntVector.fromArray(INTS, ag, x).lanewise(VectorOperators.LSHL, 1)
+                    .add(IntVector.fromArray(INTS, ag, x - 1))
+                    .add(IntVector.fromArray(INTS, ag, x + 1));
+            sumAg.lanewise(VectorOperators.LSHL, 4).and(0xFF00FF00)
+                    .or(sumRb.lanewise(VectorOperators.LSHR, 4).and(PixelKernels.RED_BLUE))
+                    .intoArray(dst, d + x);
+        }
+        for (; x < width; x++) {
+            dst[d + x] = horizontal(rb, ag, x, width);
+        }
+    }
+
+    private static int horizontal(int[] rb, int[] ag, int x, int width) {
+        int sumRb = rb[x] << 1;
+        int sumAg = ag[x] << 1;
+        if (x > 0) {
+            sumRb += rb[x - 1];
+            sumAg += ag[x - 1];
+        }
+        if (x + 1 < width) {
+            sumRb += rb[x + 1];
+            sumAg += ag[x + 1];
+        }
+        return ((sumAg << 4) & 0xFF00FF00) | ((sumRb >>> 4) & PixelKernels.RED_BLUE);
+    }
+
+    @Override
+    public String name() {
+        return "vector x" + LANES;
+    }
+}
@@ -0,0 +1,36 @@
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * A video file being written, one frame size and frame rate for the whole file.
+ */
+public interface VideoWriter extends Closeable {
+    /**
+     * Appends {@code frame}, an opaque {@link BufferedImage#TYPE_INT_RGB} image of the video's size.
+     */
+    void writeFrame(BufferedImage frame) throws IOException;
+
+    /**
+     * Appends the previous frame once more, for a frame period nothing was rendered in.
+     */
+    void repeatFrame() throws IOException;
+
+    /**
+     * Bytes written so far.
+     */
+    long getBytes();
+
+    /**
+     * A writer for {@code file} picked by its extension: {@code .y4m} for raw YUV, anything else
+     * for Motion-JPEG AVI.
+     */
+    static VideoWriter open(File file, int width, int height, int framesPerSecond) throws IOException {
+        if (file.getName().toLowerCase(Locale.ROOT).endsWith(".y4m")) {
+            return new Y4mWriter(file, width, height, framesPerSecond);
+        }
+        return new MjpegAviWriter(file, width, height, framesPerSecond);
+    }
+}
@@ -0,0 +1,84 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes raw 4:2:0 YUV4MPEG2, for encoding later with whatever encoder is at hand. Full range
+ * JPEG YCbCr, chroma averaged over 2x2 pixels, so the frame size has to be even.
+ */
+public class Y4mWriter implements VideoWriter {
+    private static final byte[] FRAME = "FRAME\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    private final int width;
+    private final int height;
+    private final byte[] planes;
+    private long bytes;
+
+    public Y4mWriter(File file, int width, int height, int framesPerSecond) throws IOException {
+        if ((width & 1) != 0 || (height & 1) != 0) {
+            throw new IllegalArgumentException("Frame size must be even: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        planes = new byte[width * height * 3 / 2];
+        out = new BufferedOutputStream(new FileOutputStream(file), 1 << 20);
+        byte[] header = ("YUV4MPEG2 W" + width + " H" + height + " F" + framesPerSecond + ":1 Ip A1:1 C420jpeg\n")
+                .getBytes(StandardCharsets.US_ASCII);
+        out.write(header);
+        bytes += header.length;
+    }
+
+    @Override
+    public void writeFrame(BufferedImage frame) throws IOException {
+        int[] rgb = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+        int stride = frame.getWidth();
+        int cb = width * height;
+        int cr = cb + cb / 4;
+        for (int y = 0; y < height; y += 2) {
+            for (int x = 0; x < width; x += 2) {
+                int r = 0;
+                int g = 0;
+                int b = 0;
+                for (int n = 0; n < 4; n++) {
+                    int px = x + (n & 1);
+                    int py = y + (n >> 1);
+                    int p = rgb[py * stride + px];
+                    int pr = p >> 16 & 0xFF;
+                    int pg = p >> 8 & 0xFF;
+                    int pb = p & 0xFF;
+                    planes[py * width + px] = (byte) ((77 * pr + 150 * pg + 29 * pb + 128) >> 8);
+                    r += pr;
+                    g += pg;
+                    b += pb;
+                }
+                int c = (y >> 1) * (width >> 1) + (x >> 1);
+                planes[cb + c] = (byte) (((-43 * r - 85 * g + 128 * b + 512) >> 10) + 128);
+                planes[cr + c] = (byte) (((128 * r - 107 * g - 21 * b + 512) >> 10) + 128);
+            }
+        }
+        repeatFrame();
+    }
+
+    @Override
+    public void repeatFrame() throws IOException {
+        out.write(FRAME);
+        out.write(planes);
+        bytes += FRAME.length + planes.length;
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,95 @@
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The effect layer composed with partial uploads, against the same layer uploaded whole every frame.
+ */
+class CompositorTest {
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    private static final int FRAMES = 90;
+    private static final int MAX_RADIUS = 40;
+
+    @Test
+    void partialUploadsComposeTheSameFrames() {
+        Compositor[] compositors = play(new int[]{60, 250, 160, 300}, new int[]{50, 190, 120, 20}, new int[]{0, 10, 35, 50});
+        assertTrue(compositors[0].getUploadedPixels() < compositors[1].getUploadedPixels(),
+                "Uploaded " + compositors[0].getUploadedPixels() + " pixels, whole layers took " + compositors[1].getUploadedPixels());
+    }
+
+    @Test
+    void singleBlastUploadsWhereItIs() {
+        Compositor partial = play(new int[]{160}, new int[]{120}, new int[]{0})[0];
+        // The first upload is the whole layer, then at most the square the boom sprite or blast reaches, twice
+        long bound = (long) WIDTH * HEIGHT + (FRAMES - 1) * 2L * (2 * MAX_RADIUS + 1) * (2 * MAX_RADIUS + 1);
+        assertTrue(partial.getUploadedPixels() <= bound, "Uploaded " + partial.getUploadedPixels() + " pixels, more than " + bound);
+    }
+
+    /**
+     * Plays blast n starting at ({@code xs[n]}, {@code ys[n]}) in frame {@code starts[n]}, growing
+     * one pixel a frame until it goes at {@link #MAX_RADIUS}. Every frame is composed with partial
+     * uploads and with whole ones, which must give the same pixels. Returns both compositors.
+     */
+    private static Compositor[] play(int[] xs, int[] ys, int[] starts) {
+        BufferedImage background = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D bg = background.createGraphics();
+        bg.setPaint(new GradientPaint(0, 0, Color.BLUE, WIDTH, HEIGHT, Color.ORANGE));
+        bg.fillRect(0, 0, WIDTH, HEIGHT);
+        bg.dispose();
+        BufferedImage boom = new BufferedImage(20, 20, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage partialFrame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        BufferedImage wholeFrame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        GraphicsConfiguration gc = partialFrame.createGraphics().getDeviceConfiguration();
+        Compositor partial = new Compositor();
+        Compositor whole = new Compositor();
+        partial.setGraphicsConfiguration(gc);
+        whole.setGraphicsConfiguration(gc);
+
+        ExplosionRenderer renderer = new ExplosionRenderer(new Random(3), true);
+        Rectangle drawn = new Rectangle();
+        int[] frameXs = new int[xs.length];
+        int[] frameYs = new int[xs.length];
+        int[] frameRs = new int[xs.length];
+        for (int frame = 0; frame < FRAMES; frame++) {
+            int count = 0;
+            for (int n = 0; n < xs.length; n++) {
+                int r = frame - starts[n] + 1;
+                if (r > 0 && r <= MAX_RADIUS) {
+                    frameXs[count] = xs[n];
+                    frameYs[count] = ys[n];
+                    frameRs[count] = r;
+                    count++;
+                }
+            }
+            renderer.beginFrame(WIDTH, HEIGHT, background, 60, 1.0);
+            renderer.drawBlasts(frameXs, frameYs, frameRs, count, boom);
+            renderer.getDrawnBounds(drawn);
+
+            compose(partialFrame, partial, renderer, drawn);
+            compose(wholeFrame, whole, renderer, null);
+            assertArrayEquals(pixels(wholeFrame), pixels(partialFrame), "Frame " + frame);
+        }
+        return new Compositor[]{partial, whole};
+    }
+
+    private static void compose(BufferedImage frame, Compositor compositor, ExplosionRenderer renderer, Rectangle drawn) {
+        Graphics2D g = frame.createGraphics();
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        BufferedImage effect = renderer.getImage();
+        compositor.drawEffect(g, effect, renderer.getVersion(), drawn, effect.getWidth(), effect.getHeight());
+        g.dispose();
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return Arrays.copyOf(((DataBufferInt) image.getRaster().getDataBuffer()).getData(), WIDTH * HEIGHT);
+    }
+}
@@ -0,0 +1,41 @@
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * What single blasts draw, checked without golden frames.
+ */
+class ExplosionRendererTest {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 160;
+    private static final double MAX_R = 100;
+
+    /**
+     * The coarse levels shade blocks but cover the same pixels as full detail, also where blocks
+     * only clip the rim, and count every pixel they fill.
+     */
+    @Test
+    void coarseLevelsCoverTheWholeBlast() {
+        BufferedImage background = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage boom = new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB);
+        int[][] blasts = {{100, 80, 30}, {101, 79, 47}, {97, 83, 61}, {3, 2, 40}};
+        for (int[] blast : blasts) {
+            long full = pixels(background, boom, blast, LevelOfDetail.FULL);
+            for (int level : new int[]{LevelOfDetail.HALF, LevelOfDetail.QUARTER}) {
+                assertEquals(full, pixels(background, boom, blast, level),
+                        "Pixels of the blast at " + blast[0] + ", " + blast[1] + " of radius " + blast[2] + " at " + LevelOfDetail.name(level));
+            }
+        }
+    }
+
+    private static long pixels(BufferedImage background, BufferedImage boom, int[] blast, int level) {
+        ExplosionRenderer renderer = new ExplosionRenderer(new Random(1), true);
+        renderer.setLevelOfDetail(level);
+        renderer.beginFrame(WIDTH, HEIGHT, background, MAX_R, 1.0);
+        renderer.drawBlasts(new int[]{blast[0]}, new int[]{blast[1]}, new int[]{blast[2]}, 1, boom);
+        return renderer.getLastPixels();
+    }
+}
@@ -0,0 +1,75 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Upper bounds on what a frame of the dense {@link FrameScenario} costs, rendered each way the board
+ * can, so a performance regression fails the build like a visual one.
+ * <p>
+ * The bounds are several times what the frames take on a single slow core, loose enough for a
+ * shared build machine and tight enough to catch the per-pixel path getting a lot slower or a
+ * buffer being allocated every frame. Both can be set with system properties for a given machine.
+ * Every scenario is measured once for both bounds. Frame time depends on what else the machine
+ * runs, so its bound is tagged {@code timing} and only checked with {@code mvn -B test -Ptiming}.
+ */
+class FramePerformanceTest {
+    // -Dperf.maxFrameMs=N median frame time allowed for the dense cluster
+    private static final long MAX_FRAME_MS = Long.getLong("perf.maxFrameMs", 40);
+    // -Dperf.maxFrameBytes=N median bytes a frame may allocate, with the tiles' workers
+    private static final long MAX_FRAME_BYTES = Long.getLong("perf.maxFrameBytes", 64L << 10);
+    // Runs before the measured one, while the JIT compiles the render path
+    private static final int WARMUP_RUNS = 3;
+    // The measured ticks, every blast of the cluster is on the board in them
+    private static final int FROM_TICK = 20;
+    private static final int TO_TICK = 100;
+
+    private static final List<FrameScenario> SCENARIOS = Arrays.asList(
+            FrameScenario.cluster(),
+            FrameScenario.cluster().tiled(2),
+            FrameScenario.cluster().withLevelOfDetail(LevelOfDetail.HALF),
+            FrameScenario.cluster().withLevelOfDetail(LevelOfDetail.QUARTER),
+            FrameScenario.cluster().scaled(0.5));
+    private static final Map<String, FrameScenario.Run> RUNS = new HashMap<>();
+
+    @BeforeAll
+    static void measure() {
+        for (FrameScenario scenario : SCENARIOS) {
+            for (int n = 0; n < WARMUP_RUNS; n++) {
+                scenario.run(TO_TICK);
+            }
+            RUNS.put(scenario.name, scenario.run(TO_TICK));
+        }
+    }
+
+    static Stream<String> scenarios() {
+        return SCENARIOS.stream().map(scenario -> scenario.name);
+    }
+
+    @Tag("timing")
+    @ParameterizedTest
+    @MethodSource("scenarios")
+    void frameTime(String scenario) {
+        long median = FrameScenario.Run.median(RUNS.get(scenario).nanos, FROM_TICK, TO_TICK);
+        assertTrue(median <= TimeUnit.MILLISECONDS.toNanos(MAX_FRAME_MS),
+                String.format("Median %s frame took %.2f ms, more than %d ms", scenario, median / 1e6, MAX_FRAME_MS));
+    }
+
+    @ParameterizedTest
+    @MethodSource("scenarios")
+    void allocation(String scenario) {
+        long median = FrameScenario.Run.median(RUNS.get(scenario).allocated, FROM_TICK, TO_TICK);
+        // -1 where the JVM does not count allocations, nothing to check then
+        assertTrue(median <= MAX_FRAME_BYTES,
+                String.format("Median %s frame allocated %d bytes, more than %d", scenario, median, MAX_FRAME_BYTES));
+    }
+}
@@ -0,0 +1,115 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * What recording costs the render thread while a map is panned, which makes the map background
+ * a different image every frame.
+ * <p>
+ * The work a capture does is counted: it clears and copies the rectangles blasts were drawn in and
+ * allocates nothing once the frame pool is in use, however large the board and whatever happens
+ * to the background. The median capture time is held to the 1 ms the recorder may add to the
+ * render thread; a capture takes a few tens of microseconds, so one slow capture on a busy machine
+ * does not fail the build.
+ */
+class FrameRecorderTest {
+    // -Dperf.maxCaptureMs=N median time a capture may add to the render thread
+    private static final double MAX_CAPTURE_MS = Double.parseDouble(System.getProperty("perf.maxCaptureMs", "1"));
+    // -Dperf.maxCaptureBytes=N bytes a capture may allocate once the frame pool is in use
+    private static final long MAX_CAPTURE_BYTES = Long.getLong("perf.maxCaptureBytes", 1024);
+    private static final int BOARD_WIDTH = 640;
+    private static final int BOARD_HEIGHT = 480;
+    private static final int FRAMES = 300;
+    // Captures left out of the allocation check, while the pooled frames get their images
+    private static final int WARMUP = 20;
+
+    @Test
+    void panningMapWhileRecording(@TempDir File dir) throws IOException, InterruptedException {
+        File image = new File(dir, "map.png");
+        ImageIO.write(pattern(2048, 1536), "png", image);
+        try (MapTiles tiles = MapTiles.openOrConvert(image)) {
+            // The first recording loads and compiles the capture path
+            record(tiles, new File(dir, "warmup.y4m"));
+            Recording recording = record(tiles, new File(dir, "pan.y4m"));
+            FrameRecorder recorder = recording.recorder;
+
+            assertTrue(recorder.getWritten() > 0, "Nothing was written: " + recorder);
+            // Clearing the rectangle of the frame's last use and copying this one, never a board
+            long copyBound = recorder.getCaptured() * 2 * recording.maxDrawnPixels;
+            assertTrue(recorder.getCopiedPixels() <= copyBound,
+                    "Captures copied " + recorder.getCopiedPixels() + " pixels, more than " + copyBound + ": " + recorder);
+            // -1 where the JVM does not count allocations, nothing to check then
+            assertTrue(recording.bytesPerCapture <= MAX_CAPTURE_BYTES,
+                    "A capture allocated " + recording.bytesPerCapture + " bytes, more than " + MAX_CAPTURE_BYTES + ": " + recorder);
+            long median = recorder.getCaptureNanos(0.5);
+            assertTrue(median <= MAX_CAPTURE_MS * 1e6,
+                    String.format("The median capture took %.3f ms, more than %.3f ms: %s", median / 1e6, MAX_CAPTURE_MS, recorder));
+        }
+    }
+
+    /**
+     * Pans the map a few pixels every frame, with a blast on the board, and records it to {@code file}.
+     */
+    private static Recording record(MapTiles tiles, File file) throws InterruptedException {
+        BufferedImage crosshair = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage boom = new BufferedImage(20, 20, BufferedImage.TYPE_INT_ARGB);
+        RenderStats stats = new RenderStats();
+        Rectangle drawn = new Rectangle();
+        int[] none = new int[0];
+        MapViewport map = new MapViewport(tiles);
+        map.setBoardSize(BOARD_WIDTH, BOARD_HEIGHT);
+        ExplosionRenderer renderer = new ExplosionRenderer(new Random(1), true);
+        FrameRecorder recorder = new FrameRecorder(file, 60, crosshair, 16);
+        long allocated = 0;
+        long maxDrawnPixels = 0;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            map.pan(7, 5);
+            BufferedImage background = map.background();
+            renderer.beginFrame(map.getLayerWidth(), map.getLayerHeight(), background, 60, 1.0);
+            renderer.drawBlasts(new int[]{BOARD_WIDTH / 2}, new int[]{BOARD_HEIGHT / 2}, new int[]{frame % 50 + 1}, 1, boom);
+            renderer.getDrawnBounds(drawn);
+            maxDrawnPixels = Math.max(maxDrawnPixels, (long) drawn.width * drawn.height);
+
+            long before = stats.allocatedBytes();
+            recorder.capture(renderer.getImage(), drawn, background, tiles, map.getOriginX(), map.getOriginY(),
+                    map.getZoom(), 1, BOARD_WIDTH, BOARD_HEIGHT, none, none, 0);
+            if (frame >= WARMUP) {
+                allocated = before < 0 || allocated < 0 ? -1 : allocated + stats.allocatedBytes() - before;
+            }
+        }
+        recorder.close();
+        assertTrue(recorder.awaitFinished(30, TimeUnit.SECONDS), "The encoder did not finish: " + recorder);
+        return new Recording(recorder, allocated < 0 ? -1 : allocated / (FRAMES - WARMUP), maxDrawnPixels);
+    }
+
+    private static BufferedImage pattern(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                image.setRGB(i, j, (i * 255 / width) << 16 | (j * 255 / height) << 8 | (((i >> 5) + (j >> 5)) % 2 == 0 ? 60 : 190));
+            }
+        }
+        return image;
+    }
+
+    private static final class Recording {
+        final FrameRecorder recorder;
+        final long bytesPerCapture;
+        final long maxDrawnPixels;
+
+        Recording(FrameRecorder recorder, long bytesPerCapture, long maxDrawnPixels) {
+            this.recorder = recorder;
+            this.bytesPerCapture = bytesPerCapture;
+            this.maxDrawnPixels = maxDrawnPixels;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A fixed strike scenario played through the board's own path, headless: spawns go through a
+ * {@link SimulationEngine}, every tick is rendered by an {@link ExplosionRenderer} seeded the same
+ * way each run, and frames are composed over the background like the board shows them.
+ * <p>
+ * By default rendering is single-threaded at full detail on the direct path, from the radial
+ * tables, at the board's resolution. {@link #tiled}, {@link #legacy}, {@link #withLevelOfDetail},
+ * {@link #withAtlas} and {@link #scaled} render it the other ways the board can, and combine.
+ * Each way gives the same pixels every run.
+ */
+final class FrameScenario {
+    static final double MAX_R = 60;
+    static final double BLAST_INCREMENT = 0.6;
+    static final double FOG_HEIGHT = 1.0;
+    static final long RENDER_SEED = 48;
+
+    private static final int BOOM_SIZE = 80;
+    private static BufferedImage boom;
+
+    final String name;
+    final int width;
+    final int height;
+    private final BufferedImage background;
+    // Spawn n lands at (x[n], y[n]) before tick t[n]
+    private final int[] x;
+    private final int[] y;
+    private final int[] t;
+    // How it is rendered, set on copies by the methods below
+    // Workers of a TileRasterizer, 0 renders one blast after another
+    private int threads;
+    private boolean legacy;
+    private int levelOfDetail = LevelOfDetail.FULL;
+    private File atlas;
+    private double scale = 1;
+
+    private FrameScenario(String name, int width, int height, BufferedImage background, int[] x, int[] y, int[] t) {
+        this.name = name;
+        this.width = width;
+        this.height = height;
+        this.background = background;
+        this.x = x;
+        this.y = y;
+        this.t = t;
+    }
+
+    private FrameScenario copy(String suffix) {
+        FrameScenario copy = new FrameScenario(name + suffix, width, height, background, x, y, t);
+        copy.threads = threads;
+        copy.legacy = legacy;
+        copy.levelOfDetail = levelOfDetail;
+        copy.atlas = atlas;
+        copy.scale = scale;
+        return copy;
+    }
+
+    /**
+     * The same blasts rendered tile by tile on a pool of {@code threads}.
+     */
+    FrameScenario tiled(int threads) {
+        FrameScenario copy = copy("-tiled");
+        copy.threads = threads;
+        return copy;
+    }
+
+    /**
+     * The same blasts on the getRGB/setRGB path.
+     */
+    FrameScenario legacy() {
+        FrameScenario copy = copy("-legacy");
+        copy.legacy = true;
+        return copy;
+    }
+
+    /**
+     * The same blasts with large ones at a fixed {@link LevelOfDetail} level.
+     */
+    FrameScenario withLevelOfDetail(int levelOfDetail) {
+        FrameScenario copy = copy("-lod" + levelOfDetail);
+        copy.levelOfDetail = levelOfDetail;
+        return copy;
+    }
+
+    /**
+     * The same blasts drawn from a {@link BlastAtlas} kept in {@code directory}.
+     */
+    FrameScenario withAtlas(File directory) {
+        FrameScenario copy = copy("-atlas");
+        copy.atlas = directory;
+        return copy;
+    }
+
+    /**
+     * The same blasts rendered at {@code scale} and stretched to the board, like the board's render scale.
+     */
+    FrameScenario scaled(double scale) {
+        FrameScenario copy = copy("-scaled");
+        copy.scale = scale;
+        return copy;
+    }
+
+    /**
+     * One blast in the middle of the board.
+     */
+    static FrameScenario single() {
+        return new FrameScenario("single", 256, 192, pattern(256, 192), new int[]{128}, new int[]{96}, new int[]{0});
+    }
+
+    /**
+     * Twenty blasts within 40 pixels of each other over the first twenty ticks, so clouds and shockwaves overlap.
+     */
+    static FrameScenario cluster() {
+        Random random = new Random(7);
+        int n = 20;
+        int[] x = new int[n];
+        int[] y = new int[n];
+        int[] t = new int[n];
+        for (int k = 0; k < n; k++) {
+            x[k] = 160 + random.nextInt(81) - 40;
+            y[k] = 120 + random.nextInt(81) - 40;
+            t[k] = k;
+        }
+        return new FrameScenario("cluster", 320, 240, pattern(320, 240), x, y, t);
+    }
+
+    /**
+     * Blasts on the corners and edges of the board, some centered off it.
+     */
+    static FrameScenario edges() {
+        return new FrameScenario("edges", 256, 192, pattern(256, 192),
+                new int[]{0, 255, 0, 255, 128, -12, 268, 128},
+                new int[]{0, 0, 191, 191, -8, 96, 96, 200},
+                new int[]{0, 2, 4, 6, 8, 10, 12, 14});
+    }
+
+    /**
+     * A board in the corner of a background four times its size, with blasts on its far edges,
+     * whose shockwaves sample the background past the board.
+     */
+    static FrameScenario largeBackground() {
+        return new FrameScenario("large-background", 320, 240, pattern(1280, 960),
+                new int[]{319, 300, 160, 20},
+                new int[]{120, 239, 230, 10},
+                new int[]{0, 3, 6, 9});
+    }
+
+    BufferedImage getBackground() {
+        return background;
+    }
+
+    /**
+     * Plays the scenario up to {@code ticks}, composing the frames whose tick is in {@code keep}
+     * into {@link Run#frames} and timing every frame.
+     */
+    Run run(int ticks, int... keep) {
+        SimulationEngine engine = new SimulationEngine(new BlastStore(16), MAX_R, BLAST_INCREMENT, 0);
+        ExplosionRenderer renderer = new ExplosionRenderer(new Random(RENDER_SEED), !legacy);
+        renderer.setLevelOfDetail(levelOfDetail);
+        renderer.setAtlasDirectory(atlas);
+        RenderStats stats = new RenderStats();
+        ForkJoinPool pool = threads > 0 ? new ForkJoinPool(threads, stats.workerThreadFactory(), null, false) : null;
+        if (pool != null) {
+            renderer.setTileRasterizer(new TileRasterizer(pool, TileRasterizer.DEFAULT_TILE_SIZE));
+        }
+        try {
+            return run(engine, renderer, stats, ticks, keep);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private Run run(SimulationEngine engine, ExplosionRenderer renderer, RenderStats stats, int ticks, int[] keep) {
+        BlastStore blasts = engine.getBlasts();
+        Run run = new Run(ticks, keep.length);
+        int[] xs = new int[x.length];
+        int[] ys = new int[x.length];
+        int[] rs = new int[x.length];
+        // The layer, its background and the boom sprite at the render scale, like the board makes them
+        int layerWidth = width;
+        int layerHeight = height;
+        BufferedImage layerBackground = background;
+        BufferedImage layerBoom = boom();
+        if (scale != 1) {
+            layerWidth = Math.max(1, (int) Math.ceil(width * scale));
+            layerHeight = Math.max(1, (int) Math.ceil(height * scale));
+            layerBackground = scale(background, scale);
+            layerBoom = sprite(Math.max(1, (int) Math.round(BOOM_SIZE * scale)));
+        }
+        for (int tick = 0; tick < ticks; tick++) {
+            for (int n = 0; n < x.length; n++) {
+                if (t[n] == tick) {
+                    engine.spawn(x[n], y[n]);
+                }
+            }
+            engine.step();
+
+            long allocated = stats.allocatedBytes();
+            long start = System.nanoTime();
+            renderer.beginFrame(layerWidth, layerHeight, layerBackground, MAX_R * scale, FOG_HEIGHT);
+            int count = 0;
+            BlastStore.Snapshot snapshot = blasts.acquire();
+            try {
+                for (int n = 0; n < snapshot.size; n++) {
+                    int r = (int) snapshot.r[n];
+                    if (r > 0) {
+                        xs[count] = (int) (snapshot.x[n] * scale);
+                        ys[count] = (int) (snapshot.y[n] * scale);
+                        rs[count] = Math.max(1, (int) (r * scale));
+                        count++;
+                    }
+                }
+            } finally {
+                blasts.release(snapshot);
+            }
+            renderer.drawBlasts(xs, ys, rs, count, layerBoom);
+            run.nanos[tick] = System.nanoTime() - start;
+            run.allocated[tick] = allocated < 0 ? -1 : stats.allocatedBytes() - allocated;
+
+            int k = Arrays.binarySearch(keep, tick);
+            if (k >= 0) {
+                run.frames[k] = compose(renderer.getImage());
+            }
+        }
+        return run;
+    }
+
+    /**
+     * The effect layer over the background, opaque, the way the board and the recorder show it.
+     */
+    private BufferedImage compose(BufferedImage effect) {
+        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = frame.createGraphics();
+        g.drawImage(background, 0, 0, null);
+        if (scale == 1) {
+            g.drawImage(effect, 0, 0, null);
+        } else {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(effect, 0, 0, (int) Math.round(effect.getWidth() / scale), (int) Math.round(effect.getHeight() / scale), null);
+        }
+        g.dispose();
+        return frame;
+    }
+
+    /**
+     * {@code source} at {@code scale}, filtered the way the board scales its background.
+     */
+    private static BufferedImage scale(BufferedImage source, double scale) {
+        int width = Math.max(1, (int) Math.ceil(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.ceil(source.getHeight() * scale));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(source, 0, 0, width, height, null);
+        g.dispose();
+        return scaled;
+    }
+
+    /**
+     * Stripes and a checkerboard, so a shifted or smeared pixel shows and the golden PNGs stay small.
+     */
+    private static BufferedImage pattern(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                int red = i * 255 / width;
+                int green = j * 255 / height;
+                int blue = ((i >> 4) + (j >> 4)) % 2 == 0 ? 40 : 200;
+                image.setRGB(i, j, 0xFF000000 | red << 16 | green << 8 | blue);
+            }
+        }
+        return image;
+    }
+
+    private static synchronized BufferedImage boom() {
+        if (boom == null) {
+            boom = sprite(BOOM_SIZE);
+        }
+        return boom;
+    }
+
+    private static BufferedImage sprite(int size) {
+        try {
+            return Compositor.sprite(FrameScenario.class.getResource("cotton.png"), size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * What one run of a scenario rendered and what each frame cost.
+     */
+    static final class Run {
+        final long[] nanos;
+        /** Bytes the rendering thread and the tile workers allocated per frame, -1 where the JVM cannot tell. */
+        final long[] allocated;
+        final BufferedImage[] frames;
+
+        Run(int ticks, int kept) {
+            nanos = new long[ticks];
+            allocated = new long[ticks];
+            frames = new BufferedImage[kept];
+        }
+
+        /**
+         * Median of {@code values} from index {@code from} to {@code to}, exclusive.
+         */
+        static long median(long[] values, int from, int to) {
+            long[] sorted = Arrays.copyOfRange(values, from, to);
+            Arrays.sort(sorted);
+            return sorted[sorted.length / 2];
+        }
+    }
+}
@@ -0,0 +1,191 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Renders the {@link FrameScenario}s and compares chosen frames with the golden frames checked in
+ * under {@code src/test/resources/golden}, so a change to the blast look fails the build.
+ * <p>
+ * A pixel passes when no channel is more than {@link #TOLERANCE} levels off, which lets rounding
+ * differences through but not a moved or recolored shockwave. When a frame fails, the rendered one
+ * is written to {@code target/golden-actual} to look at. After an intended change to the look, run
+ * with {@code -Dgolden.update=true} to write new golden frames and check them in.
+ */
+class GoldenFrameTest {
+    // -Dgolden.tolerance=N levels a channel may be off
+    private static final int TOLERANCE = Integer.getInteger("golden.tolerance", 2);
+    private static final boolean UPDATE = Boolean.getBoolean("golden.update");
+    private static final File BASEDIR = new File(System.getProperty("basedir", "."));
+
+    @Test
+    void singleBlast() throws IOException {
+        check(FrameScenario.single(), 100, 20, 60, 95);
+    }
+
+    @Test
+    void denseCluster() throws IOException {
+        check(FrameScenario.cluster(), 110, 30, 70, 105);
+    }
+
+    @Test
+    void edgeOfBoard() throws IOException {
+        check(FrameScenario.edges(), 110, 25, 70);
+    }
+
+    @Test
+    void largeBackground() throws IOException {
+        check(FrameScenario.largeBackground(), 100, 30, 70);
+    }
+
+    @Test
+    void tiledCluster() throws IOException {
+        check(FrameScenario.cluster().tiled(2), 110, 30, 70, 105);
+    }
+
+    @Test
+    void tiledEdgeOfBoard() throws IOException {
+        check(FrameScenario.edges().tiled(2), 110, 25, 70);
+    }
+
+    @Test
+    void clusterWithoutBlur() throws IOException {
+        check(FrameScenario.cluster().withLevelOfDetail(LevelOfDetail.NO_BLUR), 110, 30, 70, 105);
+    }
+
+    @Test
+    void clusterAtHalfResolution() throws IOException {
+        check(FrameScenario.cluster().withLevelOfDetail(LevelOfDetail.HALF), 110, 30, 70, 105);
+    }
+
+    @Test
+    void clusterAtQuarterResolution() throws IOException {
+        check(FrameScenario.cluster().withLevelOfDetail(LevelOfDetail.QUARTER), 110, 30, 70, 105);
+    }
+
+    @Test
+    void tiledClusterAtQuarterResolution() throws IOException {
+        check(FrameScenario.cluster().tiled(2).withLevelOfDetail(LevelOfDetail.QUARTER), 110, 30, 70, 105);
+    }
+
+    @Test
+    void clusterAtHalfRenderScale() throws IOException {
+        check(FrameScenario.cluster().scaled(0.5), 110, 30, 70, 105);
+    }
+
+    @Test
+    void atlasMatchesRadialTables(@TempDir File dir) {
+        FrameScenario scenario = FrameScenario.cluster();
+        assertSamePixels(scenario.run(110, 30, 70, 105), scenario.withAtlas(dir).run(110, 30, 70, 105),
+                "The atlas rendered other pixels than the radial tables");
+        // The second run reads the atlas saved by the first
+        assertSamePixels(scenario.run(110, 30, 70, 105), scenario.withAtlas(dir).run(110, 30, 70, 105),
+                "The saved atlas rendered other pixels than the radial tables");
+    }
+
+    @Test
+    void renderingIsRepeatable() {
+        FrameScenario scenario = FrameScenario.cluster();
+        BufferedImage first = scenario.run(60, 59).frames[0];
+        BufferedImage second = scenario.run(60, 59).frames[0];
+        assertEquals(0, compare(first, second).bad, "The same scenario rendered different pixels");
+    }
+
+    @Test
+    void legacyMatchesDirect() {
+        FrameScenario scenario = FrameScenario.cluster();
+        assertSamePixels(scenario.run(110, 30, 70, 105), scenario.legacy().run(110, 30, 70, 105),
+                "The legacy path rendered other pixels than the direct one");
+    }
+
+    @Test
+    void tiledIsIndependentOfThreads() {
+        FrameScenario scenario = FrameScenario.cluster();
+        assertSamePixels(scenario.tiled(1).run(110, 30, 70, 105), scenario.tiled(3).run(110, 30, 70, 105),
+                "Tiles rendered other pixels on three threads than on one");
+    }
+
+    private static void assertSamePixels(FrameScenario.Run expected, FrameScenario.Run actual, String message) {
+        for (int k = 0; k < expected.frames.length; k++) {
+            Difference difference = compare(expected.frames[k], actual.frames[k]);
+            assertEquals(0, difference.max, message + ", first at (" + difference.firstOffX + ", " + difference.firstOffY + ")");
+        }
+    }
+
+    private static void check(FrameScenario scenario, int ticks, int... keep) throws IOException {
+        FrameScenario.Run run = scenario.run(ticks, keep);
+        StringBuilder failures = new StringBuilder();
+        for (int k = 0; k < keep.length; k++) {
+            String name = scenario.name + "-" + keep[k] + ".png";
+            BufferedImage actual = run.frames[k];
+            if (UPDATE) {
+                File golden = new File(BASEDIR, "src/test/resources/golden/" + name);
+                golden.getParentFile().mkdirs();
+                ImageIO.write(actual, "png", golden);
+                continue;
+            }
+            BufferedImage expected;
+            try (InputStream in = GoldenFrameTest.class.getResourceAsStream("/golden/" + name)) {
+                assertNotNull(in, "No golden frame " + name + ", run with -Dgolden.update=true to write it");
+                expected = ImageIO.read(in);
+            }
+            Difference difference = compare(expected, actual);
+            if (difference.bad > 0) {
+                File written = new File(BASEDIR, "target/golden-actual/" + name);
+                written.getParentFile().mkdirs();
+                ImageIO.write(actual, "png", written);
+                failures.append(String.format("%s: %d pixels off by more than %d, up to %d, first at (%d, %d); rendered frame in %s%n",
+                        name, difference.bad, TOLERANCE, difference.max, difference.firstX, difference.firstY, written));
+            }
+        }
+        if (failures.length() > 0) {
+            fail(failures.toString());
+        }
+    }
+
+    private static Difference compare(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth(), "width");
+        assertEquals(expected.getHeight(), actual.getHeight(), "height");
+        Difference difference = new Difference();
+        for (int j = 0; j < expected.getHeight(); j++) {
+            for (int i = 0; i < expected.getWidth(); i++) {
+                int a = expected.getRGB(i, j);
+                int b = actual.getRGB(i, j);
+                int off = 0;
+                for (int shift = 0; shift < 24; shift += 8) {
+                    off = Math.max(off, Math.abs((a >> shift & 0xFF) - (b >> shift & 0xFF)));
+                }
+                if (off > 0 && difference.max == 0) {
+                    difference.firstOffX = i;
+                    difference.firstOffY = j;
+                }
+                if (off > TOLERANCE) {
+                    if (difference.bad++ == 0) {
+                        difference.firstX = i;
+                        difference.firstY = j;
+                    }
+                }
+                difference.max = Math.max(difference.max, off);
+            }
+        }
+        return difference;
+    }
+
+    private static final class Difference {
+        int bad;
+        int max;
+        int firstX;
+        int firstY;
+        // First pixel off at all
+        int firstOffX;
+        int firstOffY;
+    }
+}
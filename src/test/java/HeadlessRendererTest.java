@@ -0,0 +1,84 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the headless renderer in its own JVM, the way a pipe into an encoder does, so anything
+ * but frames on stdout shows.
+ */
+class HeadlessRendererTest {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final int FRAMES = 12;
+
+    @Test
+    void rawFramesOnStdoutWithAtlas(@TempDir File dir) throws IOException, InterruptedException {
+        File script = new File(dir, "script.txt");
+        Files.write(script.toPath(), "32 24 0\n10 40 3\n".getBytes(StandardCharsets.US_ASCII));
+        File atlas = new File(dir, "atlas");
+        // The first run builds the atlas and saves it, the second reads it back
+        for (int run = 0; run < 2; run++) {
+            File log = new File(dir, "stderr-" + run + ".txt");
+            Process process = start(log, Collections.singletonList("-Dexplosion.atlas=" + atlas),
+                    "--script", script.getPath(),
+                    "--size", WIDTH + "x" + HEIGHT,
+                    "--frames", Integer.toString(FRAMES),
+                    "--max-iter", "40",
+                    "--out", "-");
+            long bytes = 0;
+            try (InputStream in = process.getInputStream()) {
+                byte[] buffer = new byte[1 << 16];
+                for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                    bytes += n;
+                }
+            }
+            String stderr = finish(process, log);
+            assertEquals(0, process.exitValue(), stderr);
+            assertEquals((long) WIDTH * HEIGHT * 4 * FRAMES, bytes, "Bytes on stdout in run " + run + ", stderr: " + stderr);
+            assertTrue(stderr.contains("Blast atlas"), "The atlas was not used: " + stderr);
+        }
+    }
+
+    @Test
+    void backgroundThatIsNoImage(@TempDir File dir) throws IOException, InterruptedException {
+        File text = new File(dir, "background.txt");
+        Files.write(text.toPath(), "not an image".getBytes(StandardCharsets.US_ASCII));
+        File log = new File(dir, "stderr.txt");
+        Process process = start(log, Collections.emptyList(), "--background", text.getPath(), "--out", "-");
+        process.getInputStream().close();
+        String stderr = finish(process, log);
+        assertEquals(2, process.exitValue(), stderr);
+        assertTrue(stderr.startsWith("Not an image: " + text.getPath()), stderr);
+    }
+
+    /**
+     * Starts {@code SwingExplosion --headless} with the JVM {@code options} and its stderr going to {@code log}.
+     */
+    private static Process start(File log, List<String> options, String... args) throws IOException {
+        List<String> command = new ArrayList<>(Arrays.asList(
+                new File(System.getProperty("java.home"), "bin/java").getPath(),
+                "-Djava.awt.headless=true"));
+        command.addAll(options);
+        command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), "SwingExplosion", "--headless"));
+        command.addAll(Arrays.asList(args));
+        return new ProcessBuilder(command).redirectError(log).start();
+    }
+
+    private static String finish(Process process, File log) throws IOException, InterruptedException {
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS), "The renderer did not exit");
+        return new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8);
+    }
+}